@@ -0,0 +1,258 @@
+import dictionnaire.correction.HashDict;
+import dictionnaire.correction.HashDictConcurrent;
+import image.ImageGrise;
+import image.NiveauGris;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BiFunction;
+
+/**
+ * Banc de mesure des implémentations de ImageGrise : chaque opération est mesurée sur
+ * chaque implémentation et chaque image de test (pièces héraldiques 21x21, ellipses
+ * 200x200, exemples du répertoire images/ jusqu'à 500x500, une image aléatoire de
+ * grande taille et une image de même taille presque blanche, les ellipses en son
+ * centre). Pour chaque combinaison, le programme affiche le nombre d'exécutions par
+ * seconde, le temps par point et le nombre d'octets alloués par exécution.
+ * <p>
+ * Utilisation (depuis la racine du projet, après compilation de src et bench) :
+ * <pre>
+ *     java -Xmx4g -cp out/bench Banc [--impl tab,octets] [--image exemple4] [--op inverser]
+ *          [--taille 4096] [--prechauffage 300] [--duree 1000] [--maximum 5000]
+ * </pre>
+ * Les options <code>--impl</code>, <code>--image</code> et <code>--op</code> restreignent la
+ * mesure aux noms donnés (séparés par des virgules) ; les durées sont en millisecondes.
+ * Une combinaison dont une seule exécution dépasse <code>--maximum</code> n'est mesurée
+ * qu'une fois.
+ */
+public class Banc {
+
+    /** Une opération de ImageGrise, appliquée à une image et à une seconde image de même taille */
+    private interface OperationImage {
+        int executer(ImageGrise image, ImageGrise autre);
+    }
+
+    private static final Map<String, BiFunction<Integer, Integer, ImageGrise>> IMPLEMENTATIONS = new LinkedHashMap<>();
+    // nombre de points au-delà duquel une implémentation n'est pas mesurée (trop lente ou
+    // trop gourmande en mémoire)
+    private static final Map<String, Long> LIMITES = new LinkedHashMap<>();
+    private static final Map<String, OperationImage> OPERATIONS = new LinkedHashMap<>();
+
+    static {
+        implementation("tab", ImageTab::new, Long.MAX_VALUE);
+        implementation("tab-parallele", (l, h) -> {
+            ImageTab image = new ImageTab(l, h);
+            image.definirParallele(true);
+            return image;
+        }, Long.MAX_VALUE);
+        // TabDict cherche ses clefs par parcours : le coût de chaque opération est quadratique
+        implementation("dict", ImageDict::new, 5_000);
+        implementation("dict-hash", (l, h) -> new ImageDict(l, h, HashDict::new, false), 300_000);
+        implementation("dict-creuse", (l, h) -> new ImageDict(l, h, HashDict::new, true), 300_000);
+        implementation("dict-concurrent", (l, h) -> new ImageDict(l, h, HashDictConcurrent::new, false), 300_000);
+        implementation("dict-long", (l, h) -> new ImageDict(l, h, false), 300_000);
+        implementation("dict-long-creuse", (l, h) -> new ImageDict(l, h, true), 300_000);
+        implementation("octets", ImageOctets::new, Long.MAX_VALUE);
+        implementation("octets-parallele", (l, h) -> {
+            ImageOctets image = new ImageOctets(l, h);
+            image.definirParallele(true);
+            return image;
+        }, Long.MAX_VALUE);
+        implementation("bits", ImageBits::new, Long.MAX_VALUE);
+        implementation("rle", ImageRLE::new, Long.MAX_VALUE);
+        implementation("tuiles", ImageTuiles::new, Long.MAX_VALUE);
+        implementation("concurrente", ImageConcurrente::new, Long.MAX_VALUE);
+
+        OPERATIONS.put("pointEn", (image, autre) -> {
+            int somme = 0;
+            for(int y = 0; y < image.hauteur(); y++){
+                for(int x = 0; x < image.largeur(); x++){
+                    somme += image.pointEn(x, y).ordinal();
+                }
+            }
+            return somme;
+        });
+        OPERATIONS.put("definirPoint", new OperationImage() {
+            // décalage changé à chaque exécution, pour que les points changent vraiment
+            private int decalage;
+
+            @Override
+            public int executer(ImageGrise image, ImageGrise autre) {
+                decalage++;
+                for(int y = 0; y < autre.hauteur(); y++){
+                    for(int x = 0; x < autre.largeur(); x++){
+                        autre.definirPoint(x, y, NiveauGris.deOrdinal((x + y + decalage) % NiveauGris.NB_NIVEAUX));
+                    }
+                }
+                return decalage;
+            }
+        });
+        OPERATIONS.put("compterPoints", (image, autre) -> image.compterPoints(NiveauGris.NOIR));
+        OPERATIONS.put("niveauMoyen", (image, autre) -> image.niveauMoyen().ordinal());
+        OPERATIONS.put("histogramme", (image, autre) -> image.histogramme()[0]);
+        OPERATIONS.put("inverser", (image, autre) -> empreinte(image.inverser()));
+        OPERATIONS.put("eclaircir", (image, autre) -> empreinte(image.eclaircir()));
+        OPERATIONS.put("assombrir", (image, autre) -> empreinte(image.assombrir()));
+        OPERATIONS.put("dupliquer", (image, autre) -> empreinte(image.dupliquer()));
+        OPERATIONS.put("ajouter", (image, autre) -> empreinte(image.ajouter(autre)));
+        OPERATIONS.put("soustraire", (image, autre) -> empreinte(image.soustraire(autre)));
+        OPERATIONS.put("XOR", (image, autre) -> empreinte(image.XOR(autre)));
+        OPERATIONS.put("intersection", (image, autre) -> empreinte(image.intersection(autre)));
+        OPERATIONS.put("augmenterContraste", (image, autre) -> empreinte(image.augmenterContraste()));
+        OPERATIONS.put("chaine", (image, autre) ->
+                empreinte(image.ajouter(autre).inverser().augmenterContraste()));
+        OPERATIONS.put("pipeline", (image, autre) ->
+                empreinte(Pipeline.depuis(image).ajouter(autre).inverser().augmenterContraste().executer()));
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = options(args);
+        int taille = Integer.parseInt(options.getOrDefault("taille", "4096"));
+        long prechauffage = Long.parseLong(options.getOrDefault("prechauffage", "300"));
+        long duree = Long.parseLong(options.getOrDefault("duree", "1000"));
+        long maximum = Long.parseLong(options.getOrDefault("maximum", "5000"));
+        List<String> implementations = selection(options.get("impl"), IMPLEMENTATIONS.keySet());
+        List<String> operations = selection(options.get("op"), OPERATIONS.keySet());
+
+        Map<String, int[][]> modeles = modeles(taille);
+        List<String> images = selection(options.get("image"), modeles.keySet());
+
+        System.out.printf("%-17s %-14s %-19s %14s %12s %14s%n",
+                "implementation", "image", "operation", "op/s", "ns/point", "octets/op");
+        for(String nomImage : images){
+            int[][] modele = modeles.get(nomImage);
+            int hauteur = modele.length;
+            int largeur = modele[0].length;
+            long nbPoints = (long) largeur * hauteur;
+            for(String nomImplementation : implementations){
+                if(nbPoints > LIMITES.get(nomImplementation)){
+                    continue;
+                }
+                BiFunction<Integer, Integer, ImageGrise> fabrique = IMPLEMENTATIONS.get(nomImplementation);
+                ImageGrise image = remplir(fabrique.apply(largeur, hauteur), modele);
+                // seconde image : la première décalée d'un niveau, pour les opérations binaires
+                ImageGrise autre = image.assombrir();
+                for(String nomOperation : operations){
+                    OperationImage operation = OPERATIONS.get(nomOperation);
+                    ImageGrise cible = nomOperation.equals("definirPoint") ? image.dupliquer() : autre;
+                    Mesure mesure = Mesure.mesurer(() -> operation.executer(image, cible),
+                            prechauffage, duree, maximum);
+                    System.out.printf("%-17s %-14s %-19s %14.1f %12.3f %14d%n",
+                            nomImplementation, nomImage, nomOperation, mesure.debit(),
+                            mesure.nanosParPoint(nbPoints), mesure.octetsParOperation());
+                }
+            }
+        }
+        System.out.println("(puits : " + Mesure.puits() + ")");
+    }
+
+    private static void implementation(String nom, BiFunction<Integer, Integer, ImageGrise> fabrique, long limite) {
+        IMPLEMENTATIONS.put(nom, fabrique);
+        LIMITES.put(nom, limite);
+    }
+
+    // valeur dépendant d'un point du résultat, pour que le calcul ne soit pas éliminé
+    private static int empreinte(ImageGrise image) {
+        return image.pointEn(image.largeur() / 2, image.hauteur() / 2).ordinal();
+    }
+
+    /**
+     * Les images de test, sous forme de numéros d'ordre indicés [y][x]
+     *
+     * @param taille côté de l'image aléatoire et de l'image presque blanche
+     */
+    private static Map<String, int[][]> modeles(int taille) throws IOException {
+        Map<String, int[][]> modeles = new LinkedHashMap<>();
+        modeles.put("fasce", modele(Catalogue.fasce()));
+        modeles.put("barre", modele(Catalogue.barre()));
+        modeles.put("ellipses", modele(Catalogue.ellipse1(1, 2).ajouter(Catalogue.ellipse2(-30))));
+        for(int i = 1; i <= 5; i++){
+            Path chemin = Paths.get("images", "exemple" + i + ".txt");
+            if(Files.exists(chemin)){
+                modeles.put("exemple" + i, lire(chemin));
+            }
+        }
+        Random hasard = new Random(42);
+        int[][] aleatoire = new int[taille][taille];
+        for(int[] ligne : aleatoire){
+            for(int x = 0; x < ligne.length; x++){
+                ligne[x] = hasard.nextInt(NiveauGris.NB_NIVEAUX);
+            }
+        }
+        modeles.put("aleatoire" + taille, aleatoire);
+        int[][] ellipses = modeles.get("ellipses");
+        int[][] clairsemee = new int[taille][taille];
+        int marge = Math.max(0, (taille - ellipses.length) / 2);
+        for(int y = 0; y < Math.min(taille, ellipses.length); y++){
+            System.arraycopy(ellipses[y], 0, clairsemee[marge + y], marge, Math.min(taille, ellipses[y].length));
+        }
+        modeles.put("clairsemee" + taille, clairsemee);
+        return modeles;
+    }
+
+    private static int[][] modele(ImageGrise image) {
+        int[][] modele = new int[image.hauteur()][image.largeur()];
+        for(int y = 0; y < image.hauteur(); y++){
+            for(int x = 0; x < image.largeur(); x++){
+                modele[y][x] = image.pointEn(x, y).ordinal();
+            }
+        }
+        return modele;
+    }
+
+    private static int[][] lire(Path chemin) throws IOException {
+        try(LecteurTexte lecteur = LecteurTexte.ouvrir(chemin)){
+            int[][] modele = new int[lecteur.hauteur()][lecteur.largeur()];
+            byte[] niveaux = new byte[lecteur.largeur()];
+            for(int[] ligne : modele){
+                lecteur.lireLigne(niveaux);
+                for(int x = 0; x < ligne.length; x++){
+                    ligne[x] = niveaux[x];
+                }
+            }
+            return modele;
+        }
+    }
+
+    private static ImageGrise remplir(ImageGrise image, int[][] modele) {
+        for(int y = 0; y < modele.length; y++){
+            for(int x = 0; x < modele[y].length; x++){
+                if(modele[y][x] != NiveauGris.BLANC.ordinal()){
+                    image.definirPoint(x, y, NiveauGris.deOrdinal(modele[y][x]));
+                }
+            }
+        }
+        return image;
+    }
+
+    private static Map<String, String> options(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for(int i = 0; i + 1 < args.length; i += 2){
+            if(!args[i].startsWith("--")){
+                throw new IllegalArgumentException("option inconnue : " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    // les noms choisis (tous si aucun), dans l'ordre de référence
+    private static List<String> selection(String choix, Iterable<String> noms) {
+        List<String> voulus = choix == null ? null : Arrays.asList(choix.split(","));
+        List<String> resultat = new ArrayList<>();
+        for(String nom : noms){
+            if(voulus == null || voulus.contains(nom)){
+                resultat.add(nom);
+            }
+        }
+        return resultat;
+    }
+}
@@ -0,0 +1,122 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Mesure du débit et de l'allocation mémoire d'une opération répétée. L'opération est
+ * d'abord exécutée pendant une durée de préchauffage (pour laisser le compilateur JIT
+ * l'optimiser), puis répétée jusqu'à atteindre la durée de mesure. Les octets alloués
+ * sont ceux du thread courant (les allocations des threads du ForkJoinPool en mode
+ * parallèle ne sont donc pas comptées).
+ */
+class Mesure {
+
+    /** Opération mesurée : elle retourne une valeur dépendant de son résultat, conservée
+     * pour que le JIT ne supprime pas le calcul */
+    interface Operation {
+        int executer();
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    // résultats accumulés, pour que les appels ne soient pas éliminés comme inutiles
+    private static int puits;
+
+    final long iterations;
+    final long nanos;
+    final long octets;
+
+    private Mesure(long iterations, long nanos, long octets) {
+        this.iterations = iterations;
+        this.nanos = nanos;
+        this.octets = octets;
+    }
+
+    /**
+     * Préchauffe puis mesure l'opération. Si une seule exécution dépasse la durée
+     * maximale, la mesure s'arrête là (avec une seule itération).
+     *
+     * @param operation
+     * @param prechauffageMs
+     * @param dureeMs
+     * @param maximumMs
+     */
+    static Mesure mesurer(Operation operation, long prechauffageMs, long dureeMs, long maximumMs) {
+        long debut = System.nanoTime();
+        consommer(operation.executer());
+        long premiere = System.nanoTime() - debut;
+        if(premiere > maximumMs * 1_000_000L){
+            return new Mesure(1, premiere, -1);
+        }
+        long finPrechauffage = debut + prechauffageMs * 1_000_000L;
+        while(System.nanoTime() < finPrechauffage){
+            consommer(operation.executer());
+        }
+        long octetsAvant = octetsAlloues();
+        long iterations = 0;
+        debut = System.nanoTime();
+        long fin = debut + dureeMs * 1_000_000L;
+        long maintenant;
+        do {
+            consommer(operation.executer());
+            iterations++;
+            maintenant = System.nanoTime();
+        } while(maintenant < fin);
+        long octets = octetsAvant < 0 ? -1 : octetsAlloues() - octetsAvant;
+        return new Mesure(iterations, maintenant - debut, octets);
+    }
+
+    /**
+     * Nombre d'exécutions par seconde
+     */
+    double debit() {
+        return iterations * 1e9 / nanos;
+    }
+
+    /**
+     * Durée moyenne d'une exécution divisée par le nombre de points spécifié
+     *
+     * @param nbPoints
+     */
+    double nanosParPoint(long nbPoints) {
+        return (double) nanos / iterations / nbPoints;
+    }
+
+    /**
+     * Octets alloués par exécution (-1 si la JVM ne permet pas de les compter)
+     */
+    long octetsParOperation() {
+        return octets < 0 ? -1 : octets / iterations;
+    }
+
+    /**
+     * Valeur dépendant de tous les résultats, à afficher en fin de programme
+     */
+    static int puits() {
+        return puits;
+    }
+
+    private static void consommer(int resultat) {
+        puits += resultat;
+    }
+
+    private static long octetsAlloues() {
+        if(THREADS == null){
+            return -1;
+        }
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // le ThreadMXBean étendu de HotSpot, seul à compter les allocations (null sinon)
+    private static com.sun.management.ThreadMXBean threads() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(!(threads instanceof com.sun.management.ThreadMXBean)){
+            return null;
+        }
+        com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+        if(!hotspot.isThreadAllocatedMemorySupported()){
+            return null;
+        }
+        hotspot.setThreadAllocatedMemoryEnabled(true);
+        return hotspot;
+    }
+}
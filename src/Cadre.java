@@ -0,0 +1,93 @@
+/**
+ * Rectangle [x0, x1[ x [y0, y1[ qui contient tous les points non blancs d'une image. Il
+ * peut contenir aussi des points blancs : il est agrandi quand un point devient non blanc,
+ * mais n'est resserré que lorsque l'image est entièrement parcourue. Hors de ce rectangle,
+ * les opérations savent que tous les points sont blancs et se dispensent de les lire.
+ */
+final class Cadre {
+
+    int x0;
+    int y0;
+    int x1;
+    int y1;
+
+    private Cadre(int x0, int y0, int x1, int y1) {
+        this.x0 = x0;
+        this.y0 = y0;
+        this.x1 = x1;
+        this.y1 = y1;
+    }
+
+    /** Cadre d'une image toute blanche */
+    static Cadre vide() {
+        return new Cadre(0, 0, 0, 0);
+    }
+
+    /** Cadre couvrant toute une image de la taille spécifiée */
+    static Cadre plein(int largeur, int hauteur) {
+        return new Cadre(0, 0, largeur, hauteur);
+    }
+
+    boolean estVide() {
+        return x1 <= x0 || y1 <= y0;
+    }
+
+    int largeur() {
+        return estVide() ? 0 : x1 - x0;
+    }
+
+    int hauteur() {
+        return estVide() ? 0 : y1 - y0;
+    }
+
+    /** Nombre de points du cadre */
+    long aire() {
+        return (long) largeur() * hauteur();
+    }
+
+    /** Agrandit le cadre pour qu'il contienne le point (x, y) */
+    void etendre(int x, int y) {
+        if(estVide()){
+            x0 = x;
+            y0 = y;
+            x1 = x + 1;
+            y1 = y + 1;
+            return;
+        }
+        if(x < x0){
+            x0 = x;
+        }
+        else if(x >= x1){
+            x1 = x + 1;
+        }
+        if(y < y0){
+            y0 = y;
+        }
+        else if(y >= y1){
+            y1 = y + 1;
+        }
+    }
+
+    /** Plus petit cadre qui contient les deux cadres */
+    Cadre union(Cadre autre) {
+        if(estVide()){
+            return autre.copie();
+        }
+        if(autre.estVide()){
+            return copie();
+        }
+        return new Cadre(Math.min(x0, autre.x0), Math.min(y0, autre.y0),
+                Math.max(x1, autre.x1), Math.max(y1, autre.y1));
+    }
+
+    /** Partie commune des deux cadres */
+    Cadre intersection(Cadre autre) {
+        Cadre commun = new Cadre(Math.max(x0, autre.x0), Math.max(y0, autre.y0),
+                Math.min(x1, autre.x1), Math.min(y1, autre.y1));
+        return commun.estVide() ? vide() : commun;
+    }
+
+    Cadre copie() {
+        return new Cadre(x0, y0, x1, y1);
+    }
+}
@@ -1,6 +1,7 @@
 import image.* ;
 import image.ImageGrise;
 import image.NiveauGris;
+import dictionnaire.correction.HashDict;
 
 /** Catalogue d'images en niveaux de gris (generees par des methodes statiques) :
  * quelques pieces honorables heraldiques (en noir et blanc) ainsi que des images
@@ -9,7 +10,7 @@ public class Catalogue
 {
     public static ImageGrise fasce()
     {
-	ImageGrise img = new ImageDict(21,21) ;
+	ImageGrise img = new ImageDict(21,21, HashDict::new, true) ;
 	for (int x=0; x<21; x++)
 	    for (int i=-2; i<=2; i++)
 		img.allumer(x, 10+i) ;
@@ -18,7 +19,7 @@ public class Catalogue
 
     public static ImageGrise pal() 
     {
-	ImageGrise img = new ImageDict(21,21) ;
+	ImageGrise img = new ImageDict(21,21, HashDict::new, true) ;
 	for (int y=0; y<21; y++)
 	    for (int i=-2; i<=2; i++)
 		img.allumer(10+i, y) ;
@@ -27,7 +28,7 @@ public class Catalogue
 
     public static ImageGrise bande() 
     {
-	ImageGrise img = new ImageDict(21,21) ;
+	ImageGrise img = new ImageDict(21,21, HashDict::new, true) ;
 	for (int x=0; x<21; x++)
 	    for (int i=-2; i<=2; i++)
 		img.allumer(Math.max(0,Math.min(20,x+i)), x) ;
@@ -36,7 +37,7 @@ public class Catalogue
 
     public static ImageGrise barre() 
     {
-	ImageGrise img = new ImageDict(21,21) ;
+	ImageGrise img = new ImageDict(21,21, HashDict::new, true) ;
 	for (int x=0; x<21; x++)
 	    for (int i=-2; i<=2; i++)
 		img.allumer(Math.max(0,Math.min(20,20-(x+i))), x) ;
@@ -45,7 +46,7 @@ public class Catalogue
     
     public static ImageGrise ellipse1(int kx, int ky) 
     {
-	ImageGrise img = new ImageDict(200,200) ;
+	ImageGrise img = new ImageDict(200,200, HashDict::new, true) ;
 	NiveauGris gris ;
 	int x, y ;
 	for (double angle=0; angle<2*Math.PI; angle+=0.01)
@@ -60,7 +61,7 @@ public class Catalogue
 
     public static ImageGrise ellipse2(int phi) 
     {
-	ImageGrise img = new ImageDict(200,200) ;
+	ImageGrise img = new ImageDict(200,200, HashDict::new, true) ;
 	NiveauGris gris ;
 	int x, y ;
 	for (double angle=0; angle<2*Math.PI; angle+=0.01)
@@ -0,0 +1,134 @@
+import image.ImageGrise;
+import image.NiveauGris;
+
+import java.util.Arrays;
+
+/**
+ * Augmentation de contraste locale : chaque point est comparé au niveau moyen de son
+ * voisinage (le carré de côté <code>2 * rayon + 1</code> qui l'entoure, limité à l'image)
+ * au lieu du niveau moyen de toute l'image, puis assombri s'il est plus foncé que cette
+ * moyenne et éclairci s'il est plus clair (il est conservé s'il lui est égal). Une image
+ * éclairée de façon inégale garde ainsi ses détails dans les zones claires comme dans les
+ * zones sombres.
+ * <p>
+ * Le voisinage est décrit par son histogramme (5 niveaux de gris seulement), tenu à jour
+ * en glissant : un histogramme par colonne pour les lignes du voisinage, dont on ajoute la
+ * colonne qui entre et retire celle qui sort à chaque point, et qui sont eux-mêmes mis à
+ * jour d'une ligne à la suivante. Le coût par point ne dépend donc pas du rayon. Les
+ * lignes de l'image sont lues une seule fois et seules <code>2 * rayon + 2</code> d'entre
+ * elles sont gardées.
+ */
+public class ContrasteLocal {
+
+    private static final int N = NiveauGris.NB_NIVEAUX;
+
+    private ContrasteLocal() {
+    }
+
+    /**
+     * Retourne, dans une nouvelle <code>ImageOctets</code>, l'image au contraste augmenté
+     * par rapport au voisinage de rayon spécifié de chaque point
+     *
+     * @param image
+     * @param rayon
+     */
+    public static ImageGrise augmenterContraste(ImageGrise image, int rayon) {
+        return augmenterContraste(image, rayon, new ImageOctets(image.largeur(), image.hauteur()));
+    }
+
+    /**
+     * Écrit dans l'image destination (qui peut être l'image elle-même) l'image au contraste
+     * augmenté par rapport au voisinage de rayon spécifié de chaque point, et la retourne ;
+     * retourne null si la destination n'est pas de même taille
+     *
+     * @param image
+     * @param rayon
+     * @param destination
+     */
+    public static ImageGrise augmenterContraste(ImageGrise image, int rayon, ImageGrise destination) {
+        int largeur = image.largeur();
+        int hauteur = image.hauteur();
+        if(destination.largeur() != largeur || destination.hauteur() != hauteur){
+            return null;
+        }
+        if(largeur == 0 || hauteur == 0){
+            return destination;
+        }
+        // lignes y - rayon à y + rayon + 1, rangées en tableau circulaire
+        byte[][] lignes = new byte[Math.min(2 * rayon + 2, hauteur)][largeur];
+        // colonnes[x * N + n] : nombre de points de niveau n de la colonne x du voisinage
+        int[] colonnes = new int[largeur * N];
+        int[] voisinage = new int[N];
+        for(int y = 0; y <= Math.min(rayon, hauteur - 1); y++){
+            lire(image, y, lignes[y % lignes.length]);
+            ajouterLigne(colonnes, lignes[y % lignes.length], 1);
+        }
+        for(int y = 0; y < hauteur; y++){
+            byte[] ligne = lignes[y % lignes.length];
+            Arrays.fill(voisinage, 0);
+            for(int x = 0; x <= Math.min(rayon, largeur - 1); x++){
+                ajouterColonne(voisinage, colonnes, x, 1);
+            }
+            for(int x = 0; x < largeur; x++){
+                if(x > 0){
+                    if(x + rayon < largeur){
+                        ajouterColonne(voisinage, colonnes, x + rayon, 1);
+                    }
+                    if(x - rayon - 1 >= 0){
+                        ajouterColonne(voisinage, colonnes, x - rayon - 1, -1);
+                    }
+                }
+                int niveau = ligne[x];
+                int moyen = moyenne(voisinage);
+                if(niveau > moyen){
+                    niveau = NiveauGris.assombrirOrdinal(niveau);
+                }
+                else if(niveau < moyen){
+                    niveau = NiveauGris.eclaircirOrdinal(niveau);
+                }
+                destination.definirPoint(x, y, NiveauGris.deOrdinal(niveau));
+            }
+            // passage à la ligne suivante : la ligne y - rayon sort du voisinage, la ligne
+            // y + rayon + 1 y entre
+            if(y - rayon >= 0){
+                ajouterLigne(colonnes, lignes[(y - rayon) % lignes.length], -1);
+            }
+            if(y + rayon + 1 < hauteur){
+                byte[] entrante = lignes[(y + rayon + 1) % lignes.length];
+                lire(image, y + rayon + 1, entrante);
+                ajouterLigne(colonnes, entrante, 1);
+            }
+        }
+        return destination;
+    }
+
+    // numéros d'ordre des points de la ligne y
+    private static void lire(ImageGrise image, int y, byte[] ligne) {
+        image.lireLigne(0, y, ligne.length, ligne, 0);
+    }
+
+    // ajoute (sens = 1) ou retire (sens = -1) une ligne des histogrammes de colonnes
+    private static void ajouterLigne(int[] colonnes, byte[] ligne, int sens) {
+        for(int x = 0; x < ligne.length; x++){
+            colonnes[x * N + ligne[x]] += sens;
+        }
+    }
+
+    // ajoute (sens = 1) ou retire (sens = -1) l'histogramme d'une colonne du voisinage
+    private static void ajouterColonne(int[] voisinage, int[] colonnes, int x, int sens) {
+        int debut = x * N;
+        for(int n = 0; n < N; n++){
+            voisinage[n] += sens * colonnes[debut + n];
+        }
+    }
+
+    // numéro d'ordre moyen (arrondi par défaut) d'un histogramme non vide
+    private static int moyenne(int[] histogramme) {
+        long somme = 0, nombre = 0;
+        for(int n = 0; n < N; n++){
+            somme += (long) n * histogramme[n];
+            nombre += histogramme[n];
+        }
+        return (int) (somme / nombre);
+    }
+}
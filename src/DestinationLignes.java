@@ -0,0 +1,38 @@
+import image.ImageGrise;
+
+import java.io.IOException;
+
+/**
+ * Destination d'image écrite ligne par ligne, de haut en bas, sans que l'image entière ne
+ * soit en mémoire : chaque ligne est donnée sous forme de numéros d'ordre
+ * (<code>ordinal()</code>) des niveaux de gris de ses points.
+ */
+public interface DestinationLignes {
+
+    /**
+     * Écrit la ligne suivante, dont les numéros d'ordre des points sont dans les
+     * <code>largeur</code> premières cases du tableau
+     *
+     * @param niveaux
+     */
+    void ecrireLigne(byte[] niveaux) throws IOException;
+
+    /**
+     * Écrit ce qui reste en attente, une fois la dernière ligne écrite
+     */
+    void terminer() throws IOException;
+
+    /**
+     * Écrit toutes les lignes de l'image, puis termine l'écriture
+     *
+     * @param image
+     */
+    default void ecrireImage(ImageGrise image) throws IOException {
+        byte[] niveaux = new byte[image.largeur()];
+        for(int y = 0; y < image.hauteur(); y++){
+            image.lireLigne(0, y, niveaux.length, niveaux, 0);
+            ecrireLigne(niveaux);
+        }
+        terminer();
+    }
+}
@@ -0,0 +1,126 @@
+import image.ImageGrise;
+import image.NiveauGris;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Exportation d'images vers un canal (fichier, socket...), ligne par ligne, à travers un
+ * unique tampon réutilisé : chaque point est traduit en un octet par une table indicée
+ * par son numéro d'ordre, sans construire de chaîne de caractères. Deux formats sont
+ * disponibles :
+ * <UL>
+ * <LI>le format texte du répertoire images/ : le caractère <code>code()</code> de chaque
+ * point, chaque ligne terminée par un saut de ligne</LI>
+ * <LI>le format PGM binaire (P5) : un en-tête texte, puis un octet par point, la
+ * luminosité de la couleur <code>couleur()</code> du niveau (255 pour le blanc, 0 pour
+ * le noir)</LI>
+ * </UL>
+ * Le canal n'est pas fermé par l'écrivain.
+ */
+public class EcrivainLignes implements DestinationLignes {
+
+    private static final int TAILLE_TAMPON = 1 << 16;
+
+    private final WritableByteChannel canal;
+    private final ByteBuffer tampon;
+    private final byte[] octets;
+    private final int largeur;
+    // octet écrit pour chaque numéro d'ordre
+    private final byte[] table;
+    // vrai si chaque ligne est suivie d'un saut de ligne
+    private final boolean sautDeLigne;
+
+    private EcrivainLignes(WritableByteChannel canal, int largeur, byte[] table, boolean sautDeLigne) {
+        this.canal = canal;
+        this.largeur = largeur;
+        this.table = table;
+        this.sautDeLigne = sautDeLigne;
+        this.tampon = ByteBuffer.allocate(Math.max(TAILLE_TAMPON, largeur + 1));
+        this.octets = tampon.array();
+    }
+
+    /**
+     * Écrivain au format texte pour des lignes de la largeur spécifiée
+     *
+     * @param canal
+     * @param largeur
+     */
+    public static EcrivainLignes texte(WritableByteChannel canal, int largeur) {
+        byte[] table = new byte[NiveauGris.NB_NIVEAUX];
+        for(int i = 0; i < table.length; i++){
+            table[i] = (byte) NiveauGris.deOrdinal(i).code();
+        }
+        return new EcrivainLignes(canal, largeur, table, true);
+    }
+
+    /**
+     * Écrivain au format PGM binaire pour une image de la taille spécifiée (l'en-tête est
+     * placé dans le tampon dès la création)
+     *
+     * @param canal
+     * @param largeur
+     * @param hauteur
+     */
+    public static EcrivainLignes pgm(WritableByteChannel canal, int largeur, int hauteur) {
+        byte[] table = new byte[NiveauGris.NB_NIVEAUX];
+        for(int i = 0; i < table.length; i++){
+            table[i] = (byte) NiveauGris.deOrdinal(i).couleur().getRed();
+        }
+        EcrivainLignes ecrivain = new EcrivainLignes(canal, largeur, table, false);
+        ecrivain.tampon.put(("P5\n" + largeur + " " + hauteur + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+        return ecrivain;
+    }
+
+    /**
+     * Écrit l'image au format texte dans le canal
+     *
+     * @param image
+     * @param canal
+     */
+    public static void exporterTexte(ImageGrise image, WritableByteChannel canal) throws IOException {
+        texte(canal, image.largeur()).ecrireImage(image);
+    }
+
+    /**
+     * Écrit l'image au format PGM binaire dans le canal
+     *
+     * @param image
+     * @param canal
+     */
+    public static void exporterPGM(ImageGrise image, WritableByteChannel canal) throws IOException {
+        pgm(canal, image.largeur(), image.hauteur()).ecrireImage(image);
+    }
+
+    @Override
+    public void ecrireLigne(byte[] niveaux) throws IOException {
+        int longueur = sautDeLigne ? largeur + 1 : largeur;
+        if(tampon.remaining() < longueur){
+            vider();
+        }
+        int p = tampon.position();
+        for(int x = 0; x < largeur; x++){
+            octets[p++] = table[niveaux[x]];
+        }
+        if(sautDeLigne){
+            octets[p++] = '\n';
+        }
+        tampon.position(p);
+    }
+
+    @Override
+    public void terminer() throws IOException {
+        vider();
+    }
+
+    // écrit le contenu du tampon dans le canal et le vide
+    private void vider() throws IOException {
+        tampon.flip();
+        while(tampon.hasRemaining()){
+            canal.write(tampon);
+        }
+        tampon.clear();
+    }
+}
@@ -0,0 +1,189 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Élément structurant d'une opération de morphologie (voir <code>Morphologie</code>) :
+ * ensemble de décalages (dx, dy) par rapport à son origine. Il est rangé sous forme de
+ * segments horizontaux : pour chaque segment, le décalage vertical dy et les décalages
+ * horizontaux de début et de fin (inclus). Un élément de forme quelconque est ainsi décrit
+ * par au plus quelques segments par ligne, et le calcul d'un segment ne coûte que trois
+ * comparaisons par point quelle que soit sa longueur.
+ */
+public final class ElementStructurant {
+
+    // segment k : ligne dy[k], colonnes debut[k] à fin[k] (incluses)
+    private final int[] dy;
+    private final int[] debut;
+    private final int[] fin;
+
+    private ElementStructurant(List<int[]> segments) {
+        if(segments.isEmpty()){
+            throw new IllegalArgumentException("élément structurant vide");
+        }
+        dy = new int[segments.size()];
+        debut = new int[segments.size()];
+        fin = new int[segments.size()];
+        for(int k = 0; k < segments.size(); k++){
+            dy[k] = segments.get(k)[0];
+            debut[k] = segments.get(k)[1];
+            fin[k] = segments.get(k)[2];
+        }
+    }
+
+    /**
+     * Rectangle de dimensions spécifiées, d'origine son centre (le point à gauche ou au-dessus
+     * du centre pour une dimension paire)
+     *
+     * @param largeur
+     * @param hauteur
+     */
+    public static ElementStructurant rectangle(int largeur, int hauteur) {
+        if(largeur <= 0 || hauteur <= 0){
+            throw new IllegalArgumentException("dimensions " + largeur + " x " + hauteur);
+        }
+        List<int[]> segments = new ArrayList<>();
+        int x0 = -(largeur - 1) / 2;
+        int y0 = -(hauteur - 1) / 2;
+        for(int j = 0; j < hauteur; j++){
+            segments.add(new int[]{y0 + j, x0, x0 + largeur - 1});
+        }
+        return new ElementStructurant(segments);
+    }
+
+    /**
+     * Carré de côté <code>2 * rayon + 1</code> centré sur l'origine
+     *
+     * @param rayon
+     */
+    public static ElementStructurant carre(int rayon) {
+        return rectangle(2 * rayon + 1, 2 * rayon + 1);
+    }
+
+    /**
+     * Disque de rayon spécifié centré sur l'origine : les points (dx, dy) tels que
+     * <code>dx² + dy² &lt;= rayon²</code>
+     *
+     * @param rayon
+     */
+    public static ElementStructurant disque(int rayon) {
+        List<int[]> segments = new ArrayList<>();
+        for(int j = -rayon; j <= rayon; j++){
+            int demiLargeur = (int) Math.sqrt((double) rayon * rayon - (double) j * j);
+            segments.add(new int[]{j, -demiLargeur, demiLargeur});
+        }
+        return new ElementStructurant(segments);
+    }
+
+    /**
+     * Croix de branches de longueur <code>rayon</code> centrée sur l'origine
+     *
+     * @param rayon
+     */
+    public static ElementStructurant croix(int rayon) {
+        List<int[]> segments = new ArrayList<>();
+        for(int j = -rayon; j <= rayon; j++){
+            segments.add(j == 0 ? new int[]{0, -rayon, rayon} : new int[]{j, 0, 0});
+        }
+        return new ElementStructurant(segments);
+    }
+
+    /**
+     * Élément formé des cases vraies du masque (<code>masque[y][x]</code>), l'origine
+     * étant la case (origineX, origineY)
+     *
+     * @param masque
+     * @param origineX
+     * @param origineY
+     */
+    public static ElementStructurant deMasque(boolean[][] masque, int origineX, int origineY) {
+        List<int[]> segments = new ArrayList<>();
+        for(int y = 0; y < masque.length; y++){
+            for(int x = 0; x < masque[y].length; x++){
+                if(!masque[y][x]){
+                    continue;
+                }
+                int x1 = x;
+                while(x1 + 1 < masque[y].length && masque[y][x1 + 1]){
+                    x1++;
+                }
+                segments.add(new int[]{y - origineY, x - origineX, x1 - origineX});
+                x = x1;
+            }
+        }
+        return new ElementStructurant(segments);
+    }
+
+    /**
+     * Retourne l'élément symétrique par rapport à l'origine (les décalages (-dx, -dy))
+     */
+    public ElementStructurant reflechi() {
+        List<int[]> segments = new ArrayList<>();
+        for(int k = 0; k < dy.length; k++){
+            segments.add(new int[]{-dy[k], -fin[k], -debut[k]});
+        }
+        return new ElementStructurant(segments);
+    }
+
+    /**
+     * Indique si l'élément contient le décalage (dx, dy)
+     *
+     * @param dx
+     * @param dy
+     */
+    public boolean contient(int dx, int dy) {
+        for(int k = 0; k < this.dy.length; k++){
+            if(this.dy[k] == dy && debut[k] <= dx && dx <= fin[k]){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int nbSegments() {
+        return dy.length;
+    }
+
+    int dy(int k) {
+        return dy[k];
+    }
+
+    int debut(int k) {
+        return debut[k];
+    }
+
+    int fin(int k) {
+        return fin[k];
+    }
+
+    int dyMin() {
+        int min = dy[0];
+        for(int d : dy){
+            min = Math.min(min, d);
+        }
+        return min;
+    }
+
+    int dyMax() {
+        int max = dy[0];
+        for(int d : dy){
+            max = Math.max(max, d);
+        }
+        return max;
+    }
+
+    /**
+     * Indique si l'élément est un rectangle plein : un même segment sur chacune des lignes
+     * consécutives. Il se décompose alors en un segment horizontal suivi d'un segment
+     * vertical.
+     */
+    boolean estRectangle() {
+        boolean[] vues = new boolean[dyMax() - dyMin() + 1];
+        for(int k = 0; k < dy.length; k++){
+            if(debut[k] != debut[0] || fin[k] != fin[0] || vues[dy[k] - dyMin()]){
+                return false;
+            }
+            vues[dy[k] - dyMin()] = true;
+        }
+        return dy.length == vues.length;
+    }
+}
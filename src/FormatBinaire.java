@@ -0,0 +1,286 @@
+import image.ImageGrise;
+import image.NiveauGris;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiFunction;
+
+/**
+ * Format binaire des images en niveaux de gris : un en-tête de 12 octets (les 4 octets
+ * "NDG1", puis la largeur et la hauteur sur 4 octets chacune, octet de poids fort en
+ * premier), suivi des lignes de points de haut en bas. Chaque ligne occupe
+ * <code>(largeur + 1) / 2</code> octets : un point par demi-octet, le numéro d'ordre du
+ * point d'abscisse paire dans les 4 bits de poids fort et celui du point suivant dans les
+ * 4 bits de poids faible (le dernier demi-octet d'une ligne de largeur impaire vaut 0).
+ * <p>
+ * Un fichier dont tous les points sont nuls est donc une image blanche, et l'adresse du
+ * point (x, y) se calcule directement : c'est ce qui permet à <code>ImageMappee</code> de
+ * travailler sur le fichier sans le lire.
+ */
+public class FormatBinaire {
+
+    /** Les 4 premiers octets d'un fichier à ce format */
+    static final int MAGIE = ('N' << 24) | ('D' << 16) | ('G' << 8) | '1';
+    /** Taille de l'en-tête en octets */
+    static final int ENTETE = 12;
+
+    private static final int TAILLE_TAMPON = 1 << 16;
+
+    private FormatBinaire() {
+    }
+
+    /**
+     * Nombre d'octets occupés par une ligne de la largeur spécifiée
+     *
+     * @param largeur
+     */
+    static int octetsParLigne(int largeur) {
+        return (largeur + 1) >>> 1;
+    }
+
+    /**
+     * Taille totale d'un fichier contenant une image de la taille spécifiée
+     *
+     * @param largeur
+     * @param hauteur
+     */
+    static long taille(int largeur, int hauteur) {
+        return ENTETE + (long) octetsParLigne(largeur) * hauteur;
+    }
+
+    /**
+     * Écrit l'en-tête d'une image de la taille spécifiée à la position courante du tampon
+     *
+     * @param tampon
+     * @param largeur
+     * @param hauteur
+     */
+    static void ecrireEntete(ByteBuffer tampon, int largeur, int hauteur) {
+        tampon.putInt(MAGIE).putInt(largeur).putInt(hauteur);
+    }
+
+    /**
+     * Lit et vérifie l'en-tête à la position courante du tampon, et retourne la largeur et
+     * la hauteur de l'image
+     *
+     * @param tampon
+     */
+    static int[] lireEntete(ByteBuffer tampon) throws IOException {
+        if(tampon.remaining() < ENTETE || tampon.getInt() != MAGIE){
+            throw new IOException("ce n'est pas une image au format binaire");
+        }
+        int largeur = tampon.getInt();
+        int hauteur = tampon.getInt();
+        if(largeur < 0 || hauteur < 0){
+            throw new IOException("dimensions invalides : " + largeur + "x" + hauteur);
+        }
+        return new int[]{largeur, hauteur};
+    }
+
+    /**
+     * Code une ligne de numéros d'ordre dans le tampon, à partir de sa position courante
+     *
+     * @param niveaux
+     * @param largeur
+     * @param tampon
+     */
+    static void coderLigne(byte[] niveaux, int largeur, ByteBuffer tampon) {
+        int x = 0;
+        for(; x + 1 < largeur; x += 2){
+            tampon.put((byte) (niveaux[x] << 4 | niveaux[x + 1]));
+        }
+        if(x < largeur){
+            tampon.put((byte) (niveaux[x] << 4));
+        }
+    }
+
+    /**
+     * Décode une ligne depuis la position courante du tampon ; lève
+     * <code>IOException</code> si un point n'a pas le numéro d'ordre d'un niveau de gris
+     *
+     * @param tampon
+     * @param niveaux
+     * @param largeur
+     * @param position position dans le fichier du premier octet de la ligne
+     */
+    static void decoderLigne(ByteBuffer tampon, byte[] niveaux, int largeur, long position) throws IOException {
+        int x = 0;
+        for(; x + 1 < largeur; x += 2){
+            int octet = tampon.get();
+            niveaux[x] = (byte) ((octet >>> 4) & 0xF);
+            niveaux[x + 1] = (byte) (octet & 0xF);
+        }
+        if(x < largeur){
+            niveaux[x] = (byte) ((tampon.get() >>> 4) & 0xF);
+        }
+        for(x = 0; x < largeur; x++){
+            if(niveaux[x] >= NiveauGris.NB_NIVEAUX){
+                throw new IOException("niveau de gris invalide (" + niveaux[x] + ") dans l'octet "
+                        + (position + (x >>> 1)) + " du fichier");
+            }
+        }
+    }
+
+    /**
+     * Enregistre l'image dans le fichier spécifié (remplacé s'il existe)
+     *
+     * @param image
+     * @param chemin
+     */
+    public static void ecrire(ImageGrise image, Path chemin) throws IOException {
+        try(FileChannel canal = FileChannel.open(chemin, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            ecrivain(canal, image.largeur(), image.hauteur()).ecrireImage(image);
+        }
+    }
+
+    /**
+     * Écrivain ligne par ligne d'une image de la taille spécifiée vers le canal (l'en-tête
+     * est placé dans le tampon dès la création ; le canal n'est pas fermé par l'écrivain)
+     *
+     * @param canal
+     * @param largeur
+     * @param hauteur
+     */
+    public static Ecrivain ecrivain(WritableByteChannel canal, int largeur, int hauteur) {
+        return new Ecrivain(canal, largeur, hauteur);
+    }
+
+    /**
+     * Ouvre un fichier au format binaire pour en lire les lignes une à une
+     *
+     * @param chemin
+     */
+    public static Lecteur ouvrir(Path chemin) throws IOException {
+        FileChannel canal = FileChannel.open(chemin, StandardOpenOption.READ);
+        try {
+            ByteBuffer entete = ByteBuffer.allocate(ENTETE);
+            int lus = 0;
+            while(lus >= 0 && entete.hasRemaining()){
+                lus = canal.read(entete);
+            }
+            entete.flip();
+            int[] dimensions = lireEntete(entete);
+            return new Lecteur(canal, dimensions[0], dimensions[1]);
+        }
+        catch(IOException | RuntimeException e){
+            canal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Lit le fichier dans une image créée par la fabrique (à partir de la largeur et de la
+     * hauteur lues) et la retourne
+     *
+     * @param chemin
+     * @param fabrique
+     */
+    public static <I extends ImageGrise> I lire(Path chemin, BiFunction<Integer, Integer, I> fabrique) throws IOException {
+        try(Lecteur lecteur = ouvrir(chemin)){
+            return lecteur.copierDans(fabrique.apply(lecteur.largeur(), lecteur.hauteur()));
+        }
+    }
+
+    // écrit le contenu du tampon dans le canal et le vide
+    private static void vider(ByteBuffer tampon, WritableByteChannel canal) throws IOException {
+        tampon.flip();
+        while(tampon.hasRemaining()){
+            canal.write(tampon);
+        }
+        tampon.clear();
+    }
+
+    /**
+     * Lecture ligne par ligne d'un fichier au format binaire
+     */
+    public static class Lecteur implements SourceLignes, Closeable {
+
+        private final FileChannel canal;
+        private final ByteBuffer tampon;
+        private final int largeur;
+        private final int hauteur;
+        private final int parLigne;
+        private int lignesLues;
+
+        private Lecteur(FileChannel canal, int largeur, int hauteur) {
+            this.canal = canal;
+            this.largeur = largeur;
+            this.hauteur = hauteur;
+            this.parLigne = octetsParLigne(largeur);
+            this.tampon = ByteBuffer.allocate(Math.max(TAILLE_TAMPON, parLigne));
+            tampon.limit(0);
+        }
+
+        @Override
+        public int largeur() {
+            return largeur;
+        }
+
+        @Override
+        public int hauteur() {
+            return hauteur;
+        }
+
+        @Override
+        public boolean lireLigne(byte[] niveaux) throws IOException {
+            if(lignesLues == hauteur){
+                return false;
+            }
+            if(tampon.remaining() < parLigne){
+                tampon.compact();
+                while(tampon.position() < parLigne){
+                    if(canal.read(tampon) < 0){
+                        throw new IOException("fichier tronqué à la ligne " + lignesLues);
+                    }
+                }
+                tampon.flip();
+            }
+            decoderLigne(tampon, niveaux, largeur, ENTETE + (long) lignesLues * parLigne);
+            lignesLues++;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            canal.close();
+        }
+    }
+
+    /**
+     * Écriture ligne par ligne au format binaire
+     */
+    public static class Ecrivain implements DestinationLignes {
+
+        private final WritableByteChannel canal;
+        private final ByteBuffer tampon;
+        private final int largeur;
+        private final int parLigne;
+
+        private Ecrivain(WritableByteChannel canal, int largeur, int hauteur) {
+            this.canal = canal;
+            this.largeur = largeur;
+            this.parLigne = octetsParLigne(largeur);
+            this.tampon = ByteBuffer.allocate(Math.max(TAILLE_TAMPON, ENTETE + parLigne));
+            ecrireEntete(tampon, largeur, hauteur);
+        }
+
+        @Override
+        public void ecrireLigne(byte[] niveaux) throws IOException {
+            if(tampon.remaining() < parLigne){
+                vider(tampon, canal);
+            }
+            coderLigne(niveaux, largeur, tampon);
+        }
+
+        @Override
+        public void terminer() throws IOException {
+            vider(tampon, canal);
+        }
+    }
+}
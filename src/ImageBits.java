@@ -0,0 +1,484 @@
+import image.ImageGrise;
+import image.NiveauGris;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Image en niveaux de gris compactée au bit près : les cinq niveaux de gris tiennent sur
+ * 3 bits, on range donc 21 points par <code>long</code> (le point numéro
+ * <code>i = y * largeur + x</code> occupe les bits <code>3*(i%21)</code> à
+ * <code>3*(i%21)+2</code> du mot <code>i/21</code>, le bit 63 est inutilisé).
+ * <BR>Les opérations <code>inverser</code>, <code>eclaircir</code>, <code>assombrir</code>,
+ * <code>XOR</code>, <code>intersection</code>, <code>compterPoints</code> et
+ * <code>niveauMoyen</code> traitent les 21 points d'un mot à la fois ; les autres
+ * décodent les points un par un.
+ */
+public class ImageBits implements ImageGrise {
+
+    private static final int POINTS_PAR_MOT = 21;
+    // le bit de poids faible de chacun des 21 champs
+    private static final long UNS = 0x1249249249249249L;
+    // le champ qui vaut 4 (NOIR) dans chacun des 21 champs
+    private static final long NOIRS = UNS << 2;
+
+    private long[] mots;
+    private int largeur;
+    private int hauteur;
+    // bits de poids faible des champs réellement utilisés dans le dernier mot
+    private long unsDernier;
+    // nombre de points de chaque niveau de gris (null s'il faut le recalculer)
+    private int[] histogramme;
+    // nombre de modifications effectives des points (voir version())
+    private long version;
+
+    public ImageBits(int largeur, int hauteur) {
+        long nbPoints = (long) largeur * hauteur;
+        // les comptes de l'histogramme (et ceux de compterPoints) sont des int
+        if(largeur < 0 || hauteur < 0 || nbPoints > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("dimensions " + largeur + " x " + hauteur);
+        }
+        this.largeur = largeur;
+        this.hauteur = hauteur;
+        // BLANC a le numéro d'ordre 0 : des mots nuls représentent une image blanche
+        this.mots = new long[(int) ((nbPoints + POINTS_PAR_MOT - 1) / POINTS_PAR_MOT)];
+        int reste = (int) (nbPoints % POINTS_PAR_MOT);
+        this.unsDernier = reste == 0 ? UNS : UNS & ((1L << (3 * reste)) - 1);
+        this.histogramme = new int[NiveauGris.NB_NIVEAUX];
+        this.histogramme[NiveauGris.BLANC.ordinal()] = (int) nbPoints;
+    }
+
+    /**
+     * Retourne la largeur de l’image
+     */
+    @Override
+    public int largeur() {
+        return largeur;
+    }
+
+    /**
+     * Retourne la hauteur de l’image
+     */
+    @Override
+    public int hauteur() {
+        return hauteur;
+    }
+
+    /**
+     * Retourne le niveau de gris du point de coordonnées (x,y)
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public NiveauGris pointEn(int x, int y) {
+        return NiveauGris.deOrdinal(lire(indice(x, y)));
+    }
+
+    /**
+     * Fixe le niveau de gris du point de coordonnées (x,y) à la valeur spécifiée
+     *
+     * @param x
+     * @param y
+     * @param gris
+     */
+    @Override
+    public void definirPoint(int x, int y, NiveauGris gris) {
+        ecrire(indice(x, y), gris.ordinal());
+    }
+
+    /**
+     * Met en noir le point de coordonnées (x,y)
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public void allumer(int x, int y) {
+        ecrire(indice(x, y), NiveauGris.NOIR.ordinal());
+    }
+
+    /**
+     * Met en blanc le point de coordonnées (x,y)
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public void eteindre(int x, int y) {
+        ecrire(indice(x, y), NiveauGris.BLANC.ordinal());
+    }
+
+    /**
+     * Donne une valeur aléatoire (noir ou blanc) à chaque point de l’image
+     */
+    @Override
+    public void randomize() {
+        randomize(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Donne à chaque point de l’image une valeur aléatoire (noir ou blanc) tirée à partir
+     * de la graine spécifiée
+     *
+     * @param graine
+     */
+    @Override
+    public void randomize(long graine) {
+        byte[] ligne = new byte[largeur];
+        for(int y = 0; y < hauteur; y++){
+            NiveauGris.tirerLigneNB(graine, y, ligne, 0, largeur);
+            for(int x = 0; x < largeur; x++){
+                ecrire((long) y * largeur + x, ligne[x]);
+            }
+        }
+    }
+
+    /**
+     * Copie les numéros d'ordre des points d'un morceau de ligne, décodés à la suite
+     *
+     * @param x
+     * @param y
+     * @param nombre
+     * @param ordinaux
+     * @param debut
+     */
+    @Override
+    public void lireLigne(int x, int y, int nombre, byte[] ordinaux, int debut) {
+        verifierZone(x, y, nombre, 1);
+        long base = (long) y * largeur + x;
+        for(int k = 0; k < nombre; k++){
+            ordinaux[debut + k] = (byte) lire(base + k);
+        }
+    }
+
+    /**
+     * Fixe les points d'un morceau de ligne aux numéros d'ordre spécifiés
+     *
+     * @param x
+     * @param y
+     * @param nombre
+     * @param ordinaux
+     * @param debut
+     */
+    @Override
+    public void ecrireLigne(int x, int y, int nombre, byte[] ordinaux, int debut) {
+        verifierZone(x, y, nombre, 1);
+        long base = (long) y * largeur + x;
+        for(int k = 0; k < nombre; k++){
+            ecrire(base + k, ordinaux[debut + k]);
+        }
+    }
+
+    /**
+     * Fixe tous les points d'un rectangle au niveau de gris spécifié : dans chaque ligne du
+     * rectangle, les mots entièrement couverts sont remplis d'un coup (21 points à la fois)
+     *
+     * @param x
+     * @param y
+     * @param largeur
+     * @param hauteur
+     * @param gris
+     */
+    @Override
+    public void remplir(int x, int y, int largeur, int hauteur, NiveauGris gris) {
+        verifierZone(x, y, largeur, hauteur);
+        if(largeur == 0 || hauteur == 0){
+            return;
+        }
+        int niveau = gris.ordinal();
+        for(int j = y; j < y + hauteur; j++){
+            long i = (long) j * this.largeur + x;
+            long fin = i + largeur;
+            for(; i < fin && i % POINTS_PAR_MOT != 0; i++){
+                ecrire(i, niveau);
+            }
+            for(; i + POINTS_PAR_MOT <= fin; i += POINTS_PAR_MOT){
+                mots[(int) (i / POINTS_PAR_MOT)] = niveau * UNS;
+            }
+            for(; i < fin; i++){
+                ecrire(i, niveau);
+            }
+        }
+        histogramme = null;
+        version++;
+    }
+
+    /**
+     * Compte le nombre de points de l’image dont le niveau de gris est égal au niveau spécifié
+     *
+     * @param gris
+     */
+    @Override
+    public int compterPoints(NiveauGris gris) {
+        return comptes()[gris.ordinal()];
+    }
+
+    /**
+     * Retourne une image qui est le négatif de l’image courante
+     */
+    @Override
+    public ImageGrise inverser() {
+        ImageBits image = resultat();
+        for(int i = 0; i < mots.length; i++){
+            // chaque champ vaut au plus 4 : 4 - champ ne provoque aucune retenue
+            image.mots[i] = (NOIRS - mots[i]) & (unsDuMot(i) * 7);
+        }
+        return image;
+    }
+
+    /**
+     * Retourne une image dont tous les points (sauf blancs) sont un niveau
+     * plus clair que dans l’image courante
+     */
+    @Override
+    public ImageGrise eclaircir() {
+        ImageBits image = resultat();
+        for(int i = 0; i < mots.length; i++){
+            image.mots[i] = mots[i] - nonNuls(mots[i]);
+        }
+        return image;
+    }
+
+    /**
+     * Retourne une image dont tous les points (sauf noirs) sont un niveau
+     * plus foncé que dans l’image courante
+     */
+    @Override
+    public ImageGrise assombrir() {
+        ImageBits image = resultat();
+        for(int i = 0; i < mots.length; i++){
+            long noirs = (mots[i] >>> 2) & UNS;
+            image.mots[i] = mots[i] + (unsDuMot(i) & ~noirs);
+        }
+        return image;
+    }
+
+    /**
+     * Retourne une <B>copie</B> de l’image courante
+     */
+    @Override
+    public ImageGrise dupliquer() {
+        ImageBits image = resultat();
+        System.arraycopy(mots, 0, image.mots, 0, mots.length);
+        if(histogramme != null){
+            image.histogramme = histogramme.clone();
+        }
+        return image;
+    }
+
+    /**
+     * Retourne une image en additionnant point par point les niveaux de gris de l’image
+     * courante et de l’image en paramètre (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise ajouter(ImageGrise img) {
+        if(img.largeur() != largeur || img.hauteur() != hauteur){
+            return null;
+        }
+        ImageBits autre = bitsDe(img);
+        ImageBits image = resultat();
+        long nbPoints = (long) largeur * hauteur;
+        for(long i = 0; i < nbPoints; i++){
+            image.ecrire(i, NiveauGris.ajouterOrdinaux(lire(i), autre.lire(i)));
+        }
+        return image;
+    }
+
+    /**
+     * Retourne une image en retranchant point par point les niveaux de gris de l’image
+     * courante et de l’image en paramètre (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise soustraire(ImageGrise img) {
+        if(img.largeur() != largeur || img.hauteur() != hauteur){
+            return null;
+        }
+        ImageBits autre = bitsDe(img);
+        ImageBits image = resultat();
+        long nbPoints = (long) largeur * hauteur;
+        for(long i = 0; i < nbPoints; i++){
+            image.ecrire(i, NiveauGris.soustraireOrdinaux(lire(i), autre.lire(i)));
+        }
+        return image;
+    }
+
+    /**
+     * Retourne une image en faisant un OU Exclusif (XOR) point par
+     * point les niveaux de gris de l’image courante et de l’image en
+     * paramètre (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise XOR(ImageGrise img) {
+        if(img.largeur() != largeur || img.hauteur() != hauteur){
+            return null;
+        }
+        ImageBits autre = bitsDe(img);
+        ImageBits image = resultat();
+        for(int i = 0; i < mots.length; i++){
+            // champ différent -> NOIR (4), champ égal -> BLANC (0)
+            image.mots[i] = nonNuls(mots[i] ^ autre.mots[i]) << 2;
+        }
+        return image;
+    }
+
+    /**
+     * Retourne une image qui représente "l’intersection" de l’image courante et de l’image
+     * en paramètre : seuls les points qui ont le même niveau de gris dans les deux images sont
+     * conservés (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise intersection(ImageGrise img) {
+        if(img.largeur() != largeur || img.hauteur() != hauteur){
+            return null;
+        }
+        ImageBits autre = bitsDe(img);
+        ImageBits image = resultat();
+        for(int i = 0; i < mots.length; i++){
+            long egaux = ~nonNuls(mots[i] ^ autre.mots[i]) & UNS;
+            image.mots[i] = mots[i] & (egaux * 7);
+        }
+        return image;
+    }
+
+    /**
+     * Retourne le niveau de gris moyen de l’image. Pour le calculer, il faut faire la
+     * moyenne des niveaux de chaque point de l’image (ce qui revient à compter combien il y
+     * a de points de chaque niveau de gris possible)
+     */
+    @Override
+    public NiveauGris niveauMoyen() {
+        return NiveauGris.moyenne(comptes());
+    }
+
+    /**
+     * Retourne le nombre de points de chaque niveau de gris. Il est calculé en un seul
+     * parcours des mots (par comptage de bits), puis conservé et tenu à jour à chaque
+     * modification d'un point.
+     */
+    @Override
+    public int[] histogramme() {
+        return comptes().clone();
+    }
+
+    /**
+     * Retourne le numéro de version de l’image, augmenté à chaque modification effective
+     * d’un point
+     */
+    @Override
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Retourne une image obtenue en augmentant le contraste de l’image courante. Pour
+     * augmenter le contraste, il faut rendre les points sombres plus sombres qu’ils ne sont,
+     * et les points clairs plus clairs. Un bon moyen de procéder consiste à calculer le
+     * niveau de gris moyen de l’image, et assombrir (respectivement eclaircir) les points
+     * plus sombres (resp. plus clairs) que ce niveau moyen
+     */
+    @Override
+    public ImageGrise augmenterContraste() {
+        ImageBits image = resultat();
+        int[] table = NiveauGris.tableContraste(this.niveauMoyen());
+        long nbPoints = (long) largeur * hauteur;
+        for(long i = 0; i < nbPoints; i++){
+            image.ecrire(i, table[lire(i)]);
+        }
+        return image;
+    }
+
+    // indice du point (x, y) ; un point hors de l'image est refusé, son indice pouvant
+    // désigner un point d'une autre ligne
+    private long indice(int x, int y) {
+        if(x < 0 || x >= largeur || y < 0 || y >= hauteur){
+            throw new IndexOutOfBoundsException("(" + x + ", " + y + ") hors de l'image");
+        }
+        return (long) y * largeur + x;
+    }
+
+    // vérifie que le rectangle est dans l'image (un indice linéaire hors de l'image
+    // pourrait désigner un point d'une autre ligne)
+    private void verifierZone(int x, int y, int l, int h) {
+        if(x < 0 || y < 0 || l < 0 || h < 0 || x + l > largeur || y + h > hauteur){
+            throw new IndexOutOfBoundsException("rectangle (" + x + ", " + y + ", " + l + ", " + h
+                    + ") hors de l'image " + largeur + " x " + hauteur);
+        }
+    }
+
+    // numéro d'ordre du point d'indice i
+    private int lire(long i) {
+        return (int) (mots[(int) (i / POINTS_PAR_MOT)] >>> (3 * (int) (i % POINTS_PAR_MOT))) & 7;
+    }
+
+    // fixe le numéro d'ordre du point d'indice i en tenant l'histogramme à jour
+    private void ecrire(long i, int niveau) {
+        int mot = (int) (i / POINTS_PAR_MOT);
+        int decalage = 3 * (int) (i % POINTS_PAR_MOT);
+        int ancien = (int) (mots[mot] >>> decalage) & 7;
+        if(ancien == niveau){
+            return;
+        }
+        if(histogramme != null){
+            histogramme[ancien]--;
+            histogramme[niveau]++;
+        }
+        mots[mot] = (mots[mot] & ~(7L << decalage)) | ((long) niveau << decalage);
+        version++;
+    }
+
+    // l'histogramme conservé, recalculé s'il n'est plus valide : pour chaque mot et
+    // chaque niveau, on compte les champs égaux à ce niveau
+    private int[] comptes() {
+        if(histogramme == null){
+            int[] h = new int[NiveauGris.NB_NIVEAUX];
+            for(int i = 0; i < mots.length; i++){
+                long uns = unsDuMot(i);
+                for(int niveau = 0; niveau < h.length; niveau++){
+                    h[niveau] += Long.bitCount(~nonNuls(mots[i] ^ (niveau * UNS)) & uns);
+                }
+            }
+            histogramme = h;
+        }
+        return histogramme;
+    }
+
+    // nouvelle image de même taille, destinée à être remplie directement (son
+    // histogramme sera calculé à la demande)
+    private ImageBits resultat() {
+        ImageBits image = new ImageBits(largeur, hauteur);
+        image.histogramme = null;
+        return image;
+    }
+
+    // bits de poids faible des champs utilisés dans le mot d'indice i
+    private long unsDuMot(int i) {
+        return i == mots.length - 1 ? unsDernier : UNS;
+    }
+
+    // pour chaque champ, son bit de poids faible vaut 1 si et seulement si le champ est non nul
+    private static long nonNuls(long mot) {
+        return (mot | (mot >>> 1) | (mot >>> 2)) & UNS;
+    }
+
+    // l'image en paramètre si elle est déjà compactée, sinon une copie compactée
+    private static ImageBits bitsDe(ImageGrise img) {
+        if(img instanceof ImageBits){
+            return (ImageBits) img;
+        }
+        ImageBits image = new ImageBits(img.largeur(), img.hauteur());
+        byte[] ligne = new byte[img.largeur()];
+        for(int j = 0; j < img.hauteur(); j++){
+            img.lireLigne(0, j, ligne.length, ligne, 0);
+            image.ecrireLigne(0, j, ligne.length, ligne, 0);
+        }
+        return image;
+    }
+}
@@ -0,0 +1,493 @@
+import image.ImageGrise;
+import image.NiveauGris;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Image en niveaux de gris que plusieurs threads peuvent modifier en même temps (par
+ * exemple pour dessiner plusieurs formes dans une même image). Les points sont rangés par
+ * 16 dans des mots de 64 bits (4 bits par point : le point (x, y) occupe les bits
+ * <code>4*(x%16)</code> à <code>4*(x%16)+3</code> du mot <code>y * motsParLigne + x/16</code>),
+ * chaque ligne commençant sur un nouveau mot.
+ * <p>
+ * Un point est modifié par un échange atomique (compare-and-set) du mot qui le contient :
+ * aucune écriture n'est perdue quand deux threads modifient des points d'un même mot, sans
+ * verrou, et des threads qui écrivent dans des mots différents ne se gênent pas du tout.
+ * <code>ecrireLigne</code> et <code>remplir</code> modifient de même tous les points d'un mot
+ * en un seul échange. Les lectures voient chaque point soit avant soit après une
+ * modification concurrente ; les opérations sur toute l'image (histogramme, négatif,
+ * addition...) sont à faire une fois les écritures terminées pour un résultat cohérent.
+ * <p>
+ * Comme pour <code>ImageOctets</code>, les opérations peuvent être réparties par bandes de
+ * lignes sur plusieurs threads (voir <code>definirParallele</code>).
+ */
+public class ImageConcurrente implements ImageGrise {
+
+    private static final int POINTS_PAR_MOT = 16;
+    // le champ de 4 bits de chaque point vaut 1
+    private static final long UNS = 0x1111111111111111L;
+
+    private final AtomicLongArray mots;
+    private final int largeur;
+    private final int hauteur;
+    private final int motsParLigne;
+    // nombre de modifications effectives des points (voir version()) ; réparti entre
+    // plusieurs compteurs pour que les threads qui écrivent ne se le disputent pas
+    private final LongAdder version = new LongAdder();
+    // vrai si les opérations doivent être réparties sur plusieurs threads
+    private volatile boolean parallele;
+
+    public ImageConcurrente(int largeur, int hauteur) {
+        this.largeur = largeur;
+        this.hauteur = hauteur;
+        this.motsParLigne = (largeur + POINTS_PAR_MOT - 1) / POINTS_PAR_MOT;
+        // BLANC a le numéro d'ordre 0 : des mots nuls représentent une image blanche
+        this.mots = new AtomicLongArray(motsParLigne * hauteur);
+    }
+
+    /**
+     * Active ou désactive l'exécution parallèle des opérations sur toute l'image. Les
+     * images calculées à partir de celle-ci héritent du mode choisi.
+     *
+     * @param parallele
+     */
+    public void definirParallele(boolean parallele) {
+        this.parallele = parallele;
+    }
+
+    /**
+     * Indique si les opérations sont exécutées en parallèle
+     */
+    public boolean estParallele() {
+        return parallele;
+    }
+
+    /**
+     * Retourne la largeur de l’image
+     */
+    @Override
+    public int largeur() {
+        return largeur;
+    }
+
+    /**
+     * Retourne la hauteur de l’image
+     */
+    @Override
+    public int hauteur() {
+        return hauteur;
+    }
+
+    /**
+     * Retourne le niveau de gris du point de coordonnées (x,y)
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public NiveauGris pointEn(int x, int y) {
+        long mot = mots.get(indice(x, y));
+        return NiveauGris.deOrdinal((int) (mot >>> decalage(x)) & 15);
+    }
+
+    /**
+     * Fixe le niveau de gris du point de coordonnées (x,y) à la valeur spécifiée ; peut
+     * être appelée par plusieurs threads à la fois
+     *
+     * @param x
+     * @param y
+     * @param gris
+     */
+    @Override
+    public void definirPoint(int x, int y, NiveauGris gris) {
+        ecrire(x, y, gris.ordinal());
+    }
+
+    /**
+     * Met en noir le point de coordonnées (x,y)
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public void allumer(int x, int y) {
+        ecrire(x, y, NiveauGris.NOIR.ordinal());
+    }
+
+    /**
+     * Met en blanc le point de coordonnées (x,y)
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public void eteindre(int x, int y) {
+        ecrire(x, y, NiveauGris.BLANC.ordinal());
+    }
+
+    /**
+     * Donne une valeur aléatoire (noir ou blanc) à chaque point de l’image
+     */
+    @Override
+    public void randomize() {
+        randomize(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Donne à chaque point de l’image une valeur aléatoire (noir ou blanc) tirée à partir
+     * de la graine spécifiée ; les lignes sont tirées en parallèle si l'image est en mode
+     * parallèle, avec le même résultat
+     *
+     * @param graine
+     */
+    @Override
+    public void randomize(long graine) {
+        TraitementParBandes.executer(hauteur, largeur, parallele, (debut, fin) -> {
+            byte[] ligne = new byte[largeur];
+            for(int y = debut; y < fin; y++){
+                NiveauGris.tirerLigneNB(graine, y, ligne, 0, largeur);
+                ecrireLigne(0, y, largeur, ligne, 0);
+            }
+        });
+    }
+
+    /**
+     * Copie les numéros d'ordre des points d'un morceau de ligne, 16 points par mot lu
+     *
+     * @param x
+     * @param y
+     * @param nombre
+     * @param ordinaux
+     * @param debut
+     */
+    @Override
+    public void lireLigne(int x, int y, int nombre, byte[] ordinaux, int debut) {
+        verifierZone(x, y, nombre, 1);
+        int base = y * motsParLigne;
+        for(int i = x; i < x + nombre; ){
+            long mot = mots.get(base + i / POINTS_PAR_MOT);
+            int fin = Math.min(x + nombre, (i / POINTS_PAR_MOT + 1) * POINTS_PAR_MOT);
+            for(; i < fin; i++){
+                ordinaux[debut + i - x] = (byte) ((mot >>> decalage(i)) & 15);
+            }
+        }
+    }
+
+    /**
+     * Fixe les points d'un morceau de ligne aux numéros d'ordre spécifiés, en un seul
+     * échange atomique pour les points d'un même mot
+     *
+     * @param x
+     * @param y
+     * @param nombre
+     * @param ordinaux
+     * @param debut
+     */
+    @Override
+    public void ecrireLigne(int x, int y, int nombre, byte[] ordinaux, int debut) {
+        verifierZone(x, y, nombre, 1);
+        int base = y * motsParLigne;
+        for(int i = x; i < x + nombre; ){
+            int fin = Math.min(x + nombre, (i / POINTS_PAR_MOT + 1) * POINTS_PAR_MOT);
+            long masque = 0, valeur = 0;
+            int indice = base + i / POINTS_PAR_MOT;
+            for(; i < fin; i++){
+                masque |= 15L << decalage(i);
+                valeur |= (long) ordinaux[debut + i - x] << decalage(i);
+            }
+            fusionner(indice, masque, valeur);
+        }
+    }
+
+    /**
+     * Fixe tous les points d'un rectangle au niveau de gris spécifié, un mot (16 points)
+     * à la fois
+     *
+     * @param x
+     * @param y
+     * @param largeur
+     * @param hauteur
+     * @param gris
+     */
+    @Override
+    public void remplir(int x, int y, int largeur, int hauteur, NiveauGris gris) {
+        verifierZone(x, y, largeur, hauteur);
+        long motPlein = gris.ordinal() * UNS;
+        for(int j = y; j < y + hauteur; j++){
+            for(int i = x; i < x + largeur; ){
+                int fin = Math.min(x + largeur, (i / POINTS_PAR_MOT + 1) * POINTS_PAR_MOT);
+                long masque = masque(i, fin);
+                fusionner(j * motsParLigne + i / POINTS_PAR_MOT, masque, motPlein & masque);
+                i = fin;
+            }
+        }
+    }
+
+    /**
+     * Compte le nombre de points de l’image dont le niveau de gris est égal au niveau spécifié
+     *
+     * @param gris
+     */
+    @Override
+    public int compterPoints(NiveauGris gris) {
+        return histogramme()[gris.ordinal()];
+    }
+
+    /**
+     * Retourne une image qui est le négatif de l’image courante
+     */
+    @Override
+    public ImageGrise inverser() {
+        return transformer(NiveauGris.tableInverser());
+    }
+
+    /**
+     * Retourne une image dont tous les points (sauf blancs) sont un niveau
+     * plus clair que dans l’image courante
+     */
+    @Override
+    public ImageGrise eclaircir() {
+        return transformer(NiveauGris.tableEclaircir());
+    }
+
+    /**
+     * Retourne une image dont tous les points (sauf noirs) sont un niveau
+     * plus foncé que dans l’image courante
+     */
+    @Override
+    public ImageGrise assombrir() {
+        return transformer(NiveauGris.tableAssombrir());
+    }
+
+    /**
+     * Retourne une <B>copie</B> de l’image courante
+     */
+    @Override
+    public ImageGrise dupliquer() {
+        ImageConcurrente image = resultat();
+        for(int i = 0; i < mots.length(); i++){
+            image.mots.set(i, mots.get(i));
+        }
+        return image;
+    }
+
+    /**
+     * Retourne une image en additionnant point par point les niveaux de gris de l’image
+     * courante et de l’image en paramètre (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise ajouter(ImageGrise img) {
+        return combiner(img, NiveauGris.tableAjouter());
+    }
+
+    /**
+     * Retourne une image en retranchant point par point les niveaux de gris de l’image
+     * courante et de l’image en paramètre (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise soustraire(ImageGrise img) {
+        return combiner(img, NiveauGris.tableSoustraire());
+    }
+
+    /**
+     * Retourne une image en faisant un OU Exclusif (XOR) point par
+     * point les niveaux de gris de l’image courante et de l’image en
+     * paramètre (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise XOR(ImageGrise img) {
+        return combiner(img, NiveauGris.tableXOR());
+    }
+
+    /**
+     * Retourne une image qui représente "l’intersection" de l’image courante et de l’image
+     * en paramètre : seuls les points qui ont le même niveau de gris dans les deux images sont
+     * conservés (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise intersection(ImageGrise img) {
+        return combiner(img, NiveauGris.tableIntersection());
+    }
+
+    /**
+     * Retourne le niveau de gris moyen de l’image. Pour le calculer, il faut faire la
+     * moyenne des niveaux de chaque point de l’image (ce qui revient à compter combien il y
+     * a de points de chaque niveau de gris possible)
+     */
+    @Override
+    public NiveauGris niveauMoyen() {
+        return NiveauGris.moyenne(histogramme());
+    }
+
+    /**
+     * Retourne le nombre de points de chaque niveau de gris. Il n'est pas conservé (le
+     * tenir à jour obligerait tous les threads qui écrivent à modifier les mêmes
+     * compteurs) : chaque appel parcourt l'image, 16 points par mot lu.
+     */
+    @Override
+    public int[] histogramme() {
+        int[] h = new int[NiveauGris.NB_NIVEAUX];
+        for(int y = 0; y < hauteur; y++){
+            for(int m = 0; m < motsParLigne; m++){
+                long mot = mots.get(y * motsParLigne + m);
+                int nombre = Math.min(POINTS_PAR_MOT, largeur - m * POINTS_PAR_MOT);
+                for(int k = 0; k < nombre; k++){
+                    h[(int) (mot >>> (4 * k)) & 15]++;
+                }
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Retourne le numéro de version de l’image, augmenté à chaque modification effective
+     * d’un mot (un mot regroupe jusqu'à 16 points modifiés ensemble)
+     */
+    @Override
+    public long version() {
+        return version.sum();
+    }
+
+    /**
+     * Retourne une image obtenue en augmentant le contraste de l’image courante. Pour
+     * augmenter le contraste, il faut rendre les points sombres plus sombres qu’ils ne sont,
+     * et les points clairs plus clairs. Un bon moyen de procéder consiste à calculer le
+     * niveau de gris moyen de l’image, et assombrir (respectivement eclaircir) les points
+     * plus sombres (resp. plus clairs) que ce niveau moyen
+     */
+    @Override
+    public ImageGrise augmenterContraste() {
+        return transformer(NiveauGris.tableContraste(this.niveauMoyen()));
+    }
+
+    // fixe le numéro d'ordre du point (x, y) par échange atomique de son mot
+    private void ecrire(int x, int y, int niveau) {
+        int d = decalage(x);
+        fusionner(indice(x, y), 15L << d, (long) niveau << d);
+    }
+
+    // remplace, en un seul échange atomique, les bits du mot i désignés par le masque par
+    // ceux de valeur ; recommence si un autre thread a modifié le mot entre-temps
+    private void fusionner(int i, long masque, long valeur) {
+        long ancien, nouveau;
+        do {
+            ancien = mots.get(i);
+            nouveau = (ancien & ~masque) | valeur;
+            if(nouveau == ancien){
+                return;
+            }
+        } while(!mots.compareAndSet(i, ancien, nouveau));
+        version.increment();
+    }
+
+    // nouvelle image dont chaque point est l'image par la table (indicée par numéro
+    // d'ordre) du point correspondant ; les mots sont traduits octet par octet (deux
+    // points à la fois) au moyen d'une table de 256 cases
+    private ImageConcurrente transformer(int[] table) {
+        long[] paires = new long[256];
+        for(int octet = 0; octet < 256; octet++){
+            int bas = octet & 15, haut = octet >>> 4;
+            // les champs qui ne sont pas des niveaux (inutilisés) restent nuls
+            paires[octet] = (bas < table.length ? table[bas] : 0)
+                    | (haut < table.length ? table[haut] : 0) << 4;
+        }
+        ImageConcurrente image = resultat();
+        TraitementParBandes.executer(hauteur, largeur, parallele, (debut, fin) -> {
+            for(int y = debut; y < fin; y++){
+                for(int m = 0; m < motsParLigne; m++){
+                    int i = y * motsParLigne + m;
+                    long mot = mots.get(i), nouveau = 0;
+                    for(int octet = 0; octet < 8; octet++){
+                        nouveau |= paires[(int) (mot >>> (8 * octet)) & 0xFF] << (8 * octet);
+                    }
+                    if(m == motsParLigne - 1){
+                        // les champs après la fin de la ligne restent blancs
+                        nouveau &= masque(m * POINTS_PAR_MOT, largeur);
+                    }
+                    image.mots.set(i, nouveau);
+                }
+            }
+        });
+        return image;
+    }
+
+    // nouvelle image dont chaque point est la combinaison par la table (indicée par numéros
+    // d'ordre) des points correspondants des deux images, ou null si elles ne sont pas de
+    // même taille ; l'autre image est lue ligne par ligne (voir lireLigne)
+    private ImageConcurrente combiner(ImageGrise img, int[][] table) {
+        if(img.largeur() != largeur || img.hauteur() != hauteur){
+            return null;
+        }
+        ImageConcurrente image = resultat();
+        TraitementParBandes.executer(hauteur, largeur, parallele, (debut, fin) -> {
+            byte[] ligne = new byte[largeur];
+            byte[] autre = new byte[largeur];
+            for(int y = debut; y < fin; y++){
+                lireLigne(0, y, largeur, ligne, 0);
+                img.lireLigne(0, y, largeur, autre, 0);
+                for(int x = 0; x < largeur; x++){
+                    ligne[x] = (byte) table[ligne[x]][autre[x]];
+                }
+                image.coderLigne(y, ligne);
+            }
+        });
+        return image;
+    }
+
+    // range directement une ligne de numéros d'ordre dans les mots de la ligne y (image
+    // encore propre au thread qui la calcule)
+    private void coderLigne(int y, byte[] ligne) {
+        for(int m = 0; m < motsParLigne; m++){
+            long mot = 0;
+            int fin = Math.min(largeur, (m + 1) * POINTS_PAR_MOT);
+            for(int x = m * POINTS_PAR_MOT; x < fin; x++){
+                mot |= (long) ligne[x] << decalage(x);
+            }
+            mots.set(y * motsParLigne + m, mot);
+        }
+    }
+
+    // nouvelle image de même taille, destinée à être remplie directement
+    private ImageConcurrente resultat() {
+        ImageConcurrente image = new ImageConcurrente(largeur, hauteur);
+        image.parallele = parallele;
+        return image;
+    }
+
+    // indice du mot qui contient le point (x, y)
+    private int indice(int x, int y) {
+        if(x < 0 || x >= largeur || y < 0 || y >= hauteur){
+            throw new IndexOutOfBoundsException("(" + x + ", " + y + ") hors de l'image");
+        }
+        return y * motsParLigne + x / POINTS_PAR_MOT;
+    }
+
+    // position dans son mot du champ du point d'abscisse x
+    private static int decalage(int x) {
+        return 4 * (x % POINTS_PAR_MOT);
+    }
+
+    // bits des champs des abscisses de (incluse) à a (exclue), prises dans un même mot
+    private static long masque(int de, int a) {
+        long champs = a - de == POINTS_PAR_MOT ? -1L : (1L << (4 * (a - de))) - 1;
+        return champs << decalage(de);
+    }
+
+    // vérifie que le rectangle est dans l'image
+    private void verifierZone(int x, int y, int l, int h) {
+        if(x < 0 || y < 0 || l < 0 || h < 0 || x + l > largeur || y + h > hauteur){
+            throw new IndexOutOfBoundsException("rectangle (" + x + ", " + y + ", " + l + ", " + h
+                    + ") hors de l'image " + largeur + " x " + hauteur);
+        }
+    }
+}
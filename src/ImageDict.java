@@ -1,20 +1,61 @@
 import dictionnaire.correction.Couple;
 import dictionnaire.correction.CoupleObj;
 import dictionnaire.correction.Dictionnaire;
+import dictionnaire.correction.HashDictLong;
 import dictionnaire.correction.TabDict;
 import image.ImageGrise;
 import image.NiveauGris;
 
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
 public class ImageDict implements ImageGrise {
     private Dictionnaire<Couple<Integer, Integer>, NiveauGris> tabDict;
+    private Supplier<Dictionnaire<Couple<Integer, Integer>, NiveauGris>> fabrique;
     private int largeur;
     private int hauteur;
+    // en mode creux, seuls les points non blancs sont rangés dans le dictionnaire
+    private boolean creuse;
+    // nombre de points de chaque niveau de gris, tenu à jour à chaque modification
+    private int[] comptes;
+    // nombre de modifications effectives des points (voir version())
+    private long version;
+    // points rangés par clef primitive (voir clef) : null si l'image utilise tabDict
+    private HashDictLong points;
 
 
     public ImageDict(int largeur, int hauteur){
-        this.tabDict = new TabDict<>();
+        this(largeur, hauteur, TabDict::new);
+    }
+
+    public ImageDict(int largeur, int hauteur, Supplier<Dictionnaire<Couple<Integer, Integer>, NiveauGris>> fabrique){
+        this(largeur, hauteur, fabrique, false);
+    }
+
+    /**
+     * Crée une image dont les points sont rangés dans les dictionnaires fournis par
+     * la fabrique (par exemple <code>HashDict::new</code> pour un accès en temps constant).
+     * Les images calculées à partir de celle-ci utilisent la même fabrique et le même mode.
+     * <BR>En mode <code>creuse</code>, le blanc est implicite : seuls les points non blancs
+     * sont rangés, la création est immédiate et la mémoire occupée ne dépend que du nombre
+     * de points "encrés".
+     *
+     * @param largeur
+     * @param hauteur
+     * @param fabrique
+     * @param creuse
+     */
+    public ImageDict(int largeur, int hauteur, Supplier<Dictionnaire<Couple<Integer, Integer>, NiveauGris>> fabrique, boolean creuse){
+        this.fabrique = fabrique;
+        this.tabDict = fabrique.get();
         this.largeur = largeur;
         this.hauteur = hauteur;
+        this.creuse = creuse;
+        this.comptes = new int[NiveauGris.NB_NIVEAUX];
+        this.comptes[NiveauGris.BLANC.ordinal()] = largeur * hauteur;
+        if(creuse){
+            return;
+        }
         for(int i = 0; i < largeur; i++){
             for(int j = 0; j < hauteur; j++){
                 Couple<Integer, Integer> coupleXY = new CoupleObj<>(i, j);
@@ -22,6 +63,34 @@ public class ImageDict implements ImageGrise {
             }
         }
     }
+
+    /**
+     * Crée une image dont les points sont rangés dans un <code>HashDictLong</code> : la
+     * clef d'un point est un <code>long</code> formé de ses deux coordonnées et son niveau de
+     * gris est rangé par son numéro d'ordre, si bien que lire ou modifier un point n'alloue
+     * aucun objet. Le mode <code>creuse</code> est le même qu'avec une fabrique.
+     *
+     * @param largeur
+     * @param hauteur
+     * @param creuse
+     */
+    public ImageDict(int largeur, int hauteur, boolean creuse){
+        this.largeur = largeur;
+        this.hauteur = hauteur;
+        this.creuse = creuse;
+        this.comptes = new int[NiveauGris.NB_NIVEAUX];
+        this.comptes[NiveauGris.BLANC.ordinal()] = largeur * hauteur;
+        this.points = new HashDictLong(creuse ? 0 : largeur * hauteur);
+        if(creuse){
+            return;
+        }
+        for(int i = 0; i < largeur; i++){
+            for(int j = 0; j < hauteur; j++){
+                this.points.definir(clef(i, j), (byte) NiveauGris.BLANC.ordinal());
+            }
+        }
+    }
+
     /**
      * Retourne la largeur de l’image
      */
@@ -46,13 +115,19 @@ public class ImageDict implements ImageGrise {
      */
     @Override
     public NiveauGris pointEn(int x, int y) {
-        Couple<Integer, Integer> coupleXY = new CoupleObj<>(x, y);
-        if(this.tabDict.contientClef(coupleXY)){
-            return this.tabDict.valeurPour(coupleXY);
+        if(points != null){
+            int niveau = points.valeur(clef(x, y), -1);
+            if(niveau >= 0){
+                return NiveauGris.deOrdinal(niveau);
+            }
+            return creuse && estDansImage(x, y) ? NiveauGris.BLANC : null;
         }
-        else {
-            return null;
+        Couple<Integer, Integer> coupleXY = new CoupleObj<>(x, y);
+        NiveauGris gris = this.tabDict.valeurPour(coupleXY);
+        if(gris == null && creuse && estDansImage(x, y)){
+            return NiveauGris.BLANC;
         }
+        return gris;
     }
 
     /**
@@ -64,10 +139,7 @@ public class ImageDict implements ImageGrise {
      */
     @Override
     public void definirPoint(int x, int y, NiveauGris gris) {
-        Couple<Integer, Integer> coupleXY = new CoupleObj<>(x, y);
-        if(this.tabDict.contientClef(coupleXY)){
-            this.tabDict.ajouter(coupleXY, gris);
-        }
+        ecrire(x, y, gris);
     }
 
     /**
@@ -78,10 +150,7 @@ public class ImageDict implements ImageGrise {
      */
     @Override
     public void allumer(int x, int y) {
-        Couple<Integer, Integer> coupleXY = new CoupleObj<>(x, y);
-        if(this.tabDict.contientClef(coupleXY)){
-            this.tabDict.ajouter(coupleXY, NiveauGris.NOIR);
-        }
+        ecrire(x, y, NiveauGris.NOIR);
     }
 
     /**
@@ -92,10 +161,7 @@ public class ImageDict implements ImageGrise {
      */
     @Override
     public void eteindre(int x, int y) {
-        Couple<Integer, Integer> coupleXY = new CoupleObj<>(x, y);
-        if(this.tabDict.contientClef(coupleXY)){
-            this.tabDict.ajouter(coupleXY, NiveauGris.BLANC);
-        }
+        ecrire(x, y, NiveauGris.BLANC);
     }
 
     /**
@@ -103,12 +169,47 @@ public class ImageDict implements ImageGrise {
      */
     @Override
     public void randomize() {
-        for(int i = 0; i < largeur; i++){
-            for(int j = 0; j < hauteur; j++){
-                Couple<Integer, Integer> coupleXY = new CoupleObj<>(i, j);
-                this.tabDict.ajouter(coupleXY, NiveauGris.randomizeNB());
+        randomize(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Donne à chaque point de l’image une valeur aléatoire (noir ou blanc) tirée à partir
+     * de la graine spécifiée
+     *
+     * @param graine
+     */
+    @Override
+    public void randomize(long graine) {
+        byte[] ligne = new byte[largeur];
+        for(int j = 0; j < hauteur; j++){
+            NiveauGris.tirerLigneNB(graine, j, ligne, 0, largeur);
+            for(int i = 0; i < largeur; i++){
+                ecrire(i, j, NiveauGris.deOrdinal(ligne[i]));
             }
+        }
+    }
 
+    /**
+     * Copie les numéros d'ordre des points d'un morceau de ligne ; avec les clefs
+     * primitives, les points sont lus directement dans le dictionnaire, sans allocation
+     *
+     * @param x
+     * @param y
+     * @param nombre
+     * @param ordinaux
+     * @param debut
+     */
+    @Override
+    public void lireLigne(int x, int y, int nombre, byte[] ordinaux, int debut) {
+        if(points == null){
+            ImageGrise.super.lireLigne(x, y, nombre, ordinaux, debut);
+            return;
+        }
+        if(nombre > 0 && (!estDansImage(x, y) || !estDansImage(x + nombre - 1, y))){
+            throw new IndexOutOfBoundsException("ligne (" + x + ", " + y + ", " + nombre + ") hors de l'image");
+        }
+        for(int k = 0; k < nombre; k++){
+            ordinaux[debut + k] = (byte) points.valeur(clef(x + k, y), NiveauGris.BLANC.ordinal());
         }
     }
 
@@ -119,16 +220,7 @@ public class ImageDict implements ImageGrise {
      */
     @Override
     public int compterPoints(NiveauGris gris) {
-        int cpt = 0;
-        for(int i = 0; i < largeur; i++){
-            for(int j = 0; j < hauteur; j++){
-                Couple<Integer, Integer> coupleXY = new CoupleObj<>(i, j);
-                if(this.tabDict.valeurPour(coupleXY).equals(gris)){
-                    cpt++;
-                }
-            }
-        }
-        return cpt;
+        return comptes[gris.ordinal()];
     }
 
     /**
@@ -136,11 +228,10 @@ public class ImageDict implements ImageGrise {
      */
     @Override
     public ImageGrise inverser() {
-        ImageGrise imageGrise = new ImageDict(largeur, hauteur);
+        ImageGrise imageGrise = nouvelle();
         for(int i = 0; i < this.largeur; i++){
             for(int j = 0; j < this.hauteur; j++){
-                Couple<Integer, Integer> coupleXY = new CoupleObj<>(i, j);
-                imageGrise.definirPoint(i, j, this.tabDict.valeurPour(coupleXY).inverser());
+                imageGrise.definirPoint(i, j, pointEn(i, j).inverser());
             }
         }
         return imageGrise;
@@ -152,12 +243,12 @@ public class ImageDict implements ImageGrise {
      */
     @Override
     public ImageGrise eclaircir() {
-        ImageGrise imageGrise = new ImageDict(largeur, hauteur);
+        ImageGrise imageGrise = nouvelle();
         for(int i = 0; i < this.largeur; i++){
             for(int j = 0; j < this.hauteur; j++){
-                Couple<Integer, Integer> coupleXY = new CoupleObj<>(i, j);
-                if(!this.tabDict.valeurPour(coupleXY).equals(NiveauGris.BLANC)){
-                    imageGrise.definirPoint(i, j, this.tabDict.valeurPour(coupleXY).eclaircir());
+                NiveauGris gris = pointEn(i, j);
+                if(!gris.equals(NiveauGris.BLANC)){
+                    imageGrise.definirPoint(i, j, gris.eclaircir());
                 }
             }
         }
@@ -170,13 +261,10 @@ public class ImageDict implements ImageGrise {
      */
     @Override
     public ImageGrise assombrir() {
-        ImageGrise imageGrise = new ImageDict(largeur, hauteur);
+        ImageGrise imageGrise = nouvelle();
         for(int i = 0; i < this.largeur; i++){
             for(int j = 0; j < this.hauteur; j++){
-                Couple<Integer, Integer> coupleXY = new CoupleObj<>(i, j);
-                if(!this.tabDict.valeurPour(coupleXY).equals(NiveauGris.NOIR)){
-                    imageGrise.definirPoint(i, j, this.tabDict.valeurPour(coupleXY).assombrir());
-                }
+                imageGrise.definirPoint(i, j, pointEn(i, j).assombrir());
             }
         }
         return imageGrise;
@@ -187,7 +275,7 @@ public class ImageDict implements ImageGrise {
      */
     @Override
     public ImageGrise dupliquer() {
-        ImageGrise imageGrise = new ImageDict(largeur, hauteur);
+        ImageGrise imageGrise = nouvelle();
         for(int i = 0; i < this.largeur; i++){
             for(int j = 0; j < this.hauteur; j++){
                 imageGrise.definirPoint(i, j, pointEn(i, j));
@@ -204,18 +292,10 @@ public class ImageDict implements ImageGrise {
      */
     @Override
     public ImageGrise ajouter(ImageGrise img) {
-        ImageGrise imageGrise = new ImageDict(largeur, hauteur);
         if(img.largeur() != largeur || img.hauteur() != hauteur){
             return null;
         }
-        else {
-            for(int i = 0; i < largeur; i++){
-                for(int j = 0; j < hauteur; j++){
-                     imageGrise.definirPoint(i, j, pointEn(i, j).ajouter(img.pointEn(i, j)));
-                }
-            }
-        }
-        return imageGrise;
+        return combiner(img, NiveauGris.tableAjouter(), nouvelle());
     }
 
     /**
@@ -226,18 +306,10 @@ public class ImageDict implements ImageGrise {
      */
     @Override
     public ImageGrise soustraire(ImageGrise img) {
-        ImageGrise imageGrise = new ImageTab(largeur, hauteur);
         if(img.largeur() != largeur || img.hauteur() != hauteur){
             return null;
         }
-        else {
-            for(int i = 0; i < largeur; i++){
-                for(int j = 0; j < hauteur; j++){
-                    imageGrise.definirPoint(i, j, pointEn(i, j).soustraire(img.pointEn(i, j)));
-                }
-            }
-        }
-        return imageGrise;
+        return combiner(img, NiveauGris.tableSoustraire(), new ImageTab(largeur, hauteur));
     }
 
     /**
@@ -249,18 +321,10 @@ public class ImageDict implements ImageGrise {
      */
     @Override
     public ImageGrise XOR(ImageGrise img) {
-        ImageGrise imageGrise = new ImageTab(largeur, hauteur);
         if(img.largeur() != largeur || img.hauteur() != hauteur){
             return null;
         }
-        else {
-            for(int i = 0; i < largeur; i++){
-                for(int j = 0; j < hauteur; j++){
-                    imageGrise.definirPoint(i, j, pointEn(i, j).XOR(img.pointEn(i, j)));
-                }
-            }
-        }
-        return imageGrise;
+        return combiner(img, NiveauGris.tableXOR(), new ImageTab(largeur, hauteur));
     }
 
     /**
@@ -272,24 +336,10 @@ public class ImageDict implements ImageGrise {
      */
     @Override
     public ImageGrise intersection(ImageGrise img) {
-        ImageGrise imageGrise = new ImageTab(largeur, hauteur);
         if(img.largeur() != largeur || img.hauteur() != hauteur){
             return null;
         }
-        else {
-            for(int i = 0; i < largeur; i++){
-                for(int j = 0; j < hauteur; j++){
-                    if(this.pointEn(i, j) == img.pointEn(i, j)){
-                        imageGrise.definirPoint(i, j, pointEn(i, j));
-                    }
-                    else {
-                        imageGrise.definirPoint(i, j, pointEn(i, j));
-                        imageGrise.eteindre(i, j);
-                    }
-                }
-            }
-        }
-        return imageGrise;
+        return combiner(img, NiveauGris.tableIntersection(), new ImageTab(largeur, hauteur));
     }
 
     /**
@@ -299,17 +349,25 @@ public class ImageDict implements ImageGrise {
      */
     @Override
     public NiveauGris niveauMoyen() {
-        int niveauBlanc = compterPoints(NiveauGris.BLANC);
-        int niveauGrisClair = compterPoints(NiveauGris.GRIS_CLAIR);
-        int niveauGrisMoyen = compterPoints(NiveauGris.GRIS_MOYEN);
-        int niveauGrisFonce = compterPoints(NiveauGris.GRIS_FONCE);
-        int niveauNoir = compterPoints(NiveauGris.NOIR);
-        int somme = niveauBlanc + niveauGrisClair + niveauGrisMoyen + niveauGrisFonce + niveauNoir;
-        int result = (niveauBlanc * NiveauGris.BLANC.ordinal()) + (niveauGrisClair * NiveauGris.GRIS_CLAIR.ordinal()) +
-                (niveauGrisMoyen * NiveauGris.GRIS_MOYEN.ordinal()) + (niveauGrisFonce * NiveauGris.GRIS_FONCE.ordinal()) +
-                (niveauNoir * NiveauGris.NOIR.ordinal());
-        result = result / somme;
-        return NiveauGris.values()[result];
+        return NiveauGris.moyenne(comptes);
+    }
+
+    /**
+     * Retourne le nombre de points de chaque niveau de gris, tenu à jour à chaque
+     * modification d'un point (aucun parcours du dictionnaire n'est nécessaire)
+     */
+    @Override
+    public int[] histogramme() {
+        return comptes.clone();
+    }
+
+    /**
+     * Retourne le numéro de version de l’image, augmenté à chaque modification effective
+     * d’un point
+     */
+    @Override
+    public long version() {
+        return version;
     }
 
     /**
@@ -332,8 +390,105 @@ public class ImageDict implements ImageGrise {
                 else if(niveauGrisInstance.ordinal() < niveauMoyen.ordinal()){
                     imageGrise.definirPoint(i, j, pointEn(i, j).eclaircir());
                 }
+                else {
+                    imageGrise.definirPoint(i, j, niveauGrisInstance);
+                }
             }
         }
         return imageGrise;
     }
+
+    // écrit dans resultat la combinaison par la table (indicée par numéros d'ordre) des
+    // points des deux images, une ligne à la fois au moyen des accès groupés
+    private ImageGrise combiner(ImageGrise img, int[][] table, ImageGrise resultat) {
+        byte[] ligne = new byte[largeur];
+        byte[] autre = new byte[largeur];
+        for(int j = 0; j < hauteur; j++){
+            lireLigne(0, j, largeur, ligne, 0);
+            img.lireLigne(0, j, largeur, autre, 0);
+            for(int i = 0; i < largeur; i++){
+                ligne[i] = (byte) table[ligne[i]][autre[i]];
+            }
+            resultat.ecrireLigne(0, j, largeur, ligne, 0);
+        }
+        return resultat;
+    }
+
+    // image blanche de même taille, rangée de la même façon que celle-ci
+    private ImageDict nouvelle() {
+        return points != null ? new ImageDict(largeur, hauteur, creuse) : new ImageDict(largeur, hauteur, fabrique, creuse);
+    }
+
+    // clef primitive du point (x,y) : y dans les 32 bits de poids fort, x dans les autres
+    private static long clef(int x, int y) {
+        return ((long) y << 32) | (x & 0xFFFFFFFFL);
+    }
+
+    // indique si (x,y) désigne un point de l'image
+    private boolean estDansImage(int x, int y) {
+        return x >= 0 && x < largeur && y >= 0 && y < hauteur;
+    }
+
+    // fixe le niveau de gris d'un point en tenant à jour les comptes par niveau ;
+    // en mode creux, un point blanc est retiré du dictionnaire
+    private void ecrire(int x, int y, NiveauGris gris) {
+        if(points != null){
+            ecrireClef(x, y, gris.ordinal());
+            return;
+        }
+        Couple<Integer, Integer> coupleXY = new CoupleObj<>(x, y);
+        NiveauGris ancien = this.tabDict.valeurPour(coupleXY);
+        if(!creuse){
+            if(ancien != null && ancien != gris){
+                this.tabDict.ajouter(coupleXY, gris);
+                comptes[ancien.ordinal()]--;
+                comptes[gris.ordinal()]++;
+                version++;
+            }
+            return;
+        }
+        if(!estDansImage(x, y) || (ancien == null ? NiveauGris.BLANC : ancien) == gris){
+            return;
+        }
+        if(gris == NiveauGris.BLANC){
+            if(ancien != null){
+                this.tabDict.enleverPour(coupleXY);
+            }
+        }
+        else {
+            this.tabDict.ajouter(coupleXY, gris);
+        }
+        comptes[ancien == null ? NiveauGris.BLANC.ordinal() : ancien.ordinal()]--;
+        comptes[gris.ordinal()]++;
+        version++;
+    }
+
+    // même chose avec le dictionnaire à clefs primitives, en un seul accès au dictionnaire
+    // en mode creux
+    private void ecrireClef(int x, int y, int niveau) {
+        long clef = clef(x, y);
+        int ancien;
+        if(!creuse){
+            ancien = points.valeur(clef, -1);
+            if(ancien < 0 || ancien == niveau){
+                return;
+            }
+            points.definir(clef, (byte) niveau);
+        }
+        else {
+            if(!estDansImage(x, y)){
+                return;
+            }
+            ancien = niveau == NiveauGris.BLANC.ordinal() ? points.retirer(clef) : points.definir(clef, (byte) niveau);
+            if(ancien < 0){
+                ancien = NiveauGris.BLANC.ordinal();
+            }
+            if(ancien == niveau){
+                return;
+            }
+        }
+        comptes[ancien]--;
+        comptes[niveau]++;
+        version++;
+    }
 }
@@ -19,6 +19,53 @@ public interface ImageGrise {
     void eteindre(int x, int y);
     /** Donne une valeur aléatoire (noir ou blanc) à chaque point de l’image */
     void randomize();
+    /** Donne à chaque point de l’image une valeur aléatoire (noir ou blanc) tirée à partir de
+     * la graine spécifiée, ligne par ligne (voir <code>NiveauGris.tirerLigneNB</code>) : une
+     * même graine donne toujours la même image, quelle que soit l’implémentation */
+    default void randomize(long graine) {
+        byte[] ligne = new byte[largeur()];
+        for (int y = 0; y < hauteur(); y++) {
+            image.NiveauGris.tirerLigneNB(graine, y, ligne, 0, ligne.length);
+            for (int x = 0; x < ligne.length; x++)
+                definirPoint(x, y, image.NiveauGris.deOrdinal(ligne[x]));
+        }
+    }
+    /** Copie dans <code>ordinaux</code>, à partir de l’indice <code>debut</code>, les numéros
+     * d’ordre (<code>ordinal()</code>) des <code>nombre</code> points de la ligne y qui
+     * commencent en x (ces points doivent être dans l’image). Les implémentations lisent la
+     * ligne d’un bloc, sans passer par <code>pointEn</code> pour chaque point */
+    default void lireLigne(int x, int y, int nombre, byte[] ordinaux, int debut) {
+        for (int k = 0; k < nombre; k++)
+            ordinaux[debut + k] = (byte) pointEn(x + k, y).ordinal();
+    }
+    /** Fixe les <code>nombre</code> points de la ligne y qui commencent en x aux niveaux
+     * dont les numéros d’ordre sont rangés dans <code>ordinaux</code> à partir de l’indice
+     * <code>debut</code> (ces points doivent être dans l’image) */
+    default void ecrireLigne(int x, int y, int nombre, byte[] ordinaux, int debut) {
+        for (int k = 0; k < nombre; k++)
+            definirPoint(x + k, y, image.NiveauGris.deOrdinal(ordinaux[debut + k]));
+    }
+    /** Copie dans <code>ordinaux</code>, ligne après ligne, les numéros d’ordre des points du
+     * rectangle de coin (x,y) et de dimensions spécifiées (il doit être dans l’image) : le
+     * point (x+i, y+j) est rangé à l’indice <code>j * largeur + i</code> */
+    default void lireRegion(int x, int y, int largeur, int hauteur, byte[] ordinaux) {
+        for (int j = 0; j < hauteur; j++)
+            lireLigne(x, y + j, largeur, ordinaux, j * largeur);
+    }
+    /** Fixe les points du rectangle de coin (x,y) et de dimensions spécifiées aux niveaux
+     * dont les numéros d’ordre sont rangés dans <code>ordinaux</code> comme pour
+     * <code>lireRegion</code> (le rectangle doit être dans l’image) */
+    default void ecrireRegion(int x, int y, int largeur, int hauteur, byte[] ordinaux) {
+        for (int j = 0; j < hauteur; j++)
+            ecrireLigne(x, y + j, largeur, ordinaux, j * largeur);
+    }
+    /** Fixe tous les points du rectangle de coin (x,y) et de dimensions spécifiées (il doit
+     * être dans l’image) au niveau de gris spécifié */
+    default void remplir(int x, int y, int largeur, int hauteur, image.NiveauGris gris) {
+        for (int j = 0; j < hauteur; j++)
+            for (int i = 0; i < largeur; i++)
+                definirPoint(x + i, y + j, gris);
+    }
     /** Compte le nombre de points de l’image dont le niveau de gris est égal au niveau spécifié */
     int compterPoints(image.NiveauGris gris);
     /** Retourne une image qui est le négatif de l’image courante */
@@ -49,6 +96,23 @@ public interface ImageGrise {
      * moyenne des niveaux de chaque point de l’image (ce qui revient à compter combien il y
      * a de points de chaque niveau de gris possible) */
     image.NiveauGris niveauMoyen();
+    /** Retourne l’histogramme de l’image : le nombre de points de chaque niveau de gris,
+     * indicé par le numéro d’ordre (<code>ordinal()</code>) du niveau. Le calcul se fait en
+     * un seul parcours ; les implémentations peuvent le conserver et le tenir à jour */
+    default int[] histogramme() {
+        int[] histogramme = new int[image.NiveauGris.NB_NIVEAUX];
+        for (int y = 0; y < hauteur(); y++)
+            for (int x = 0; x < largeur(); x++)
+                histogramme[pointEn(x, y).ordinal()]++;
+        return histogramme;
+    }
+    /** Retourne le numéro de version de l’image : il augmente à chaque modification effective
+     * d’un point (fixer un point au niveau qu’il a déjà ne compte pas), de sorte qu’un
+     * résultat calculé à une version reste valable tant que la version ne change pas.
+     * Retourne -1 si l’implémentation ne suit pas ses modifications */
+    default long version() {
+        return -1;
+    }
     /** Retourne une image obtenue en augmentant le contraste de l’image courante. Pour
      * augmenter le contraste, il faut rendre les points sombres plus sombres qu’ils ne sont,
      * et les points clairs plus clairs. Un bon moyen de procéder consiste à calculer le
@@ -0,0 +1,388 @@
+import image.ImageGrise;
+import image.NiveauGris;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Image en niveaux de gris stockée dans un fichier au format de <code>FormatBinaire</code>,
+ * projeté en mémoire (<code>MappedByteBuffer</code>) : l'ouverture ne lit rien, les pages du
+ * fichier sont chargées par le système à la première lecture d'un de leurs points, et
+ * plusieurs programmes qui ouvrent le même fichier partagent les mêmes pages en mémoire.
+ * <p>
+ * Une image ouverte en lecture seule lève <code>ReadOnlyBufferException</code> à toute
+ * modification ; ouverte en lecture et écriture, ses modifications sont écrites dans le
+ * fichier (au plus tard par <code>enregistrer</code>). Le fichier doit faire moins de 2 Go.
+ * Il n'est pas vérifié à l'ouverture : la lecture d'un point dont le demi-octet n'est le
+ * numéro d'ordre d'aucun niveau de gris (fichier corrompu ou d'un autre format) lève
+ * <code>IllegalStateException</code>, en indiquant la position de l'octet.
+ * Les opérations qui calculent une nouvelle image la construisent en mémoire, dans une
+ * <code>ImageOctets</code>, en un seul parcours du fichier.
+ */
+public class ImageMappee implements ImageGrise {
+
+    private final MappedByteBuffer donnees;
+    private final int largeur;
+    private final int hauteur;
+    private final int parLigne;
+
+    private ImageMappee(MappedByteBuffer donnees) throws IOException {
+        this.donnees = donnees;
+        int[] dimensions = FormatBinaire.lireEntete(donnees);
+        this.largeur = dimensions[0];
+        this.hauteur = dimensions[1];
+        this.parLigne = FormatBinaire.octetsParLigne(largeur);
+        if(donnees.capacity() < FormatBinaire.taille(largeur, hauteur)){
+            throw new IOException("fichier tronqué : " + largeur + "x" + hauteur
+                    + " points annoncés pour " + donnees.capacity() + " octets");
+        }
+    }
+
+    /**
+     * Ouvre en lecture seule l'image enregistrée dans le fichier spécifié
+     *
+     * @param chemin
+     */
+    public static ImageMappee ouvrir(Path chemin) throws IOException {
+        return ouvrir(chemin, false);
+    }
+
+    /**
+     * Ouvre l'image enregistrée dans le fichier spécifié, en lecture seule ou en lecture et
+     * écriture
+     *
+     * @param chemin
+     * @param ecriture
+     */
+    public static ImageMappee ouvrir(Path chemin, boolean ecriture) throws IOException {
+        try(FileChannel canal = ecriture
+                ? FileChannel.open(chemin, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(chemin, StandardOpenOption.READ)){
+            return new ImageMappee(canal.map(ecriture ? FileChannel.MapMode.READ_WRITE
+                    : FileChannel.MapMode.READ_ONLY, 0, canal.size()));
+        }
+    }
+
+    /**
+     * Crée (ou remplace) le fichier spécifié avec une image blanche de la taille spécifiée,
+     * et l'ouvre en lecture et écriture
+     *
+     * @param chemin
+     * @param largeur
+     * @param hauteur
+     */
+    public static ImageMappee creer(Path chemin, int largeur, int hauteur) throws IOException {
+        long taille = FormatBinaire.taille(largeur, hauteur);
+        if(taille > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("image trop grande pour être projetée : " + largeur + "x" + hauteur);
+        }
+        try(FileChannel canal = FileChannel.open(chemin, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            // les octets non écrits d'un fichier agrandi sont nuls : tous les points sont blancs
+            MappedByteBuffer donnees = canal.map(FileChannel.MapMode.READ_WRITE, 0, taille);
+            FormatBinaire.ecrireEntete(donnees, largeur, hauteur);
+            donnees.position(0);
+            return new ImageMappee(donnees);
+        }
+    }
+
+    /**
+     * Force l'écriture dans le fichier des modifications faites sur l'image
+     */
+    public void enregistrer() {
+        donnees.force();
+    }
+
+    /**
+     * Retourne la largeur de l’image
+     */
+    @Override
+    public int largeur() {
+        return largeur;
+    }
+
+    /**
+     * Retourne la hauteur de l’image
+     */
+    @Override
+    public int hauteur() {
+        return hauteur;
+    }
+
+    /**
+     * Retourne le niveau de gris du point de coordonnées (x,y)
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public NiveauGris pointEn(int x, int y) {
+        int i = indice(x, y);
+        int octet = donnees.get(i);
+        int niveau = (x & 1) == 0 ? (octet >>> 4) & 0xF : octet & 0xF;
+        if(niveau >= NiveauGris.NB_NIVEAUX){
+            throw niveauInvalide(niveau, i);
+        }
+        return NiveauGris.deOrdinal(niveau);
+    }
+
+    /**
+     * Fixe le niveau de gris du point de coordonnées (x,y) à la valeur spécifiée
+     *
+     * @param x
+     * @param y
+     * @param gris
+     */
+    @Override
+    public void definirPoint(int x, int y, NiveauGris gris) {
+        int i = indice(x, y);
+        int octet = donnees.get(i);
+        if((x & 1) == 0){
+            octet = (octet & 0x0F) | (gris.ordinal() << 4);
+        }
+        else {
+            octet = (octet & 0xF0) | gris.ordinal();
+        }
+        donnees.put(i, (byte) octet);
+    }
+
+    /**
+     * Met en noir le point de coordonnées (x,y)
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public void allumer(int x, int y) {
+        definirPoint(x, y, NiveauGris.NOIR);
+    }
+
+    /**
+     * Met en blanc le point de coordonnées (x,y)
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public void eteindre(int x, int y) {
+        definirPoint(x, y, NiveauGris.BLANC);
+    }
+
+    /**
+     * Donne une valeur aléatoire (noir ou blanc) à chaque point de l’image
+     */
+    @Override
+    public void randomize() {
+        randomize(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Donne à chaque point de l’image une valeur aléatoire (noir ou blanc) tirée à partir
+     * de la graine spécifiée ; chaque ligne est codée puis écrite d'un bloc dans le fichier
+     *
+     * @param graine
+     */
+    @Override
+    public void randomize(long graine) {
+        byte[] ligne = new byte[largeur];
+        ByteBuffer tampon = donnees.duplicate();
+        for(int y = 0; y < hauteur; y++){
+            NiveauGris.tirerLigneNB(graine, y, ligne, 0, largeur);
+            tampon.position(FormatBinaire.ENTETE + y * parLigne);
+            FormatBinaire.coderLigne(ligne, largeur, tampon);
+        }
+    }
+
+    /**
+     * Copie les numéros d'ordre des points d'un morceau de ligne, lus directement dans le
+     * fichier
+     *
+     * @param x
+     * @param y
+     * @param nombre
+     * @param ordinaux
+     * @param debut
+     */
+    @Override
+    public void lireLigne(int x, int y, int nombre, byte[] ordinaux, int debut) {
+        if(nombre == 0){
+            return;
+        }
+        int base = indice(x, y) - (x >>> 1);
+        indice(x + nombre - 1, y);
+        for(int k = 0; k < nombre; k++){
+            int px = x + k;
+            int octet = donnees.get(base + (px >>> 1));
+            int niveau = (px & 1) == 0 ? (octet >>> 4) & 0xF : octet & 0xF;
+            if(niveau >= NiveauGris.NB_NIVEAUX){
+                throw niveauInvalide(niveau, base + (px >>> 1));
+            }
+            ordinaux[debut + k] = (byte) niveau;
+        }
+    }
+
+    /**
+     * Compte le nombre de points de l’image dont le niveau de gris est égal au niveau spécifié
+     *
+     * @param gris
+     */
+    @Override
+    public int compterPoints(NiveauGris gris) {
+        return histogramme()[gris.ordinal()];
+    }
+
+    /**
+     * Retourne une image qui est le négatif de l’image courante
+     */
+    @Override
+    public ImageGrise inverser() {
+        return Pipeline.depuis(this).inverser().executer();
+    }
+
+    /**
+     * Retourne une image dont tous les points (sauf blancs) sont un niveau
+     * plus clair que dans l’image courante
+     */
+    @Override
+    public ImageGrise eclaircir() {
+        return Pipeline.depuis(this).eclaircir().executer();
+    }
+
+    /**
+     * Retourne une image dont tous les points (sauf noirs) sont un niveau
+     * plus foncé que dans l’image courante
+     */
+    @Override
+    public ImageGrise assombrir() {
+        return Pipeline.depuis(this).assombrir().executer();
+    }
+
+    /**
+     * Retourne une <B>copie</B> de l’image courante (en mémoire)
+     */
+    @Override
+    public ImageGrise dupliquer() {
+        return Pipeline.depuis(this).executer();
+    }
+
+    /**
+     * Retourne une image en additionnant point par point les niveaux de gris de l’image
+     * courante et de l’image en paramètre (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise ajouter(ImageGrise img) {
+        return Pipeline.depuis(this).ajouter(img).executer();
+    }
+
+    /**
+     * Retourne une image en retranchant point par point les niveaux de gris de l’image
+     * courante et de l’image en paramètre (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise soustraire(ImageGrise img) {
+        return Pipeline.depuis(this).soustraire(img).executer();
+    }
+
+    /**
+     * Retourne une image en faisant un OU Exclusif (XOR) point par
+     * point les niveaux de gris de l’image courante et de l’image en
+     * paramètre (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise XOR(ImageGrise img) {
+        return Pipeline.depuis(this).XOR(img).executer();
+    }
+
+    /**
+     * Retourne une image qui représente "l’intersection" de l’image courante et de l’image
+     * en paramètre : seuls les points qui ont le même niveau de gris dans les deux images sont
+     * conservés (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise intersection(ImageGrise img) {
+        return Pipeline.depuis(this).intersection(img).executer();
+    }
+
+    /**
+     * Retourne le niveau de gris moyen de l’image. Pour le calculer, il faut faire la
+     * moyenne des niveaux de chaque point de l’image (ce qui revient à compter combien il y
+     * a de points de chaque niveau de gris possible)
+     */
+    @Override
+    public NiveauGris niveauMoyen() {
+        return NiveauGris.moyenne(histogramme());
+    }
+
+    /**
+     * Retourne le nombre de points de chaque niveau de gris. Le fichier pouvant être modifié
+     * par d'autres programmes, il est recalculé à chaque appel, octet par octet.
+     */
+    @Override
+    public int[] histogramme() {
+        // les seize valeurs d'un demi-octet sont comptées, les invalides n'étant
+        // recherchées qu'ensuite, si besoin
+        int[] comptes = new int[16];
+        int debut = FormatBinaire.ENTETE;
+        int fin = debut + parLigne * hauteur;
+        for(int i = debut; i < fin; i++){
+            int octet = donnees.get(i);
+            comptes[(octet >>> 4) & 0xF]++;
+            comptes[octet & 0xF]++;
+        }
+        for(int niveau = NiveauGris.NB_NIVEAUX; niveau < comptes.length; niveau++){
+            if(comptes[niveau] != 0){
+                for(int i = debut; i < fin; i++){
+                    int octet = donnees.get(i);
+                    if(((octet >>> 4) & 0xF) == niveau || (octet & 0xF) == niveau){
+                        throw niveauInvalide(niveau, i);
+                    }
+                }
+            }
+        }
+        int[] h = Arrays.copyOf(comptes, NiveauGris.NB_NIVEAUX);
+        // le demi-octet inutilisé à la fin des lignes de largeur impaire a été compté blanc
+        h[NiveauGris.BLANC.ordinal()] -= (parLigne * 2 - largeur) * hauteur;
+        return h;
+    }
+
+    /**
+     * Retourne une image obtenue en augmentant le contraste de l’image courante. Pour
+     * augmenter le contraste, il faut rendre les points sombres plus sombres qu’ils ne sont,
+     * et les points clairs plus clairs. Un bon moyen de procéder consiste à calculer le
+     * niveau de gris moyen de l’image, et assombrir (respectivement eclaircir) les points
+     * plus sombres (resp. plus clairs) que ce niveau moyen
+     */
+    @Override
+    public ImageGrise augmenterContraste() {
+        return Pipeline.depuis(this).augmenterContraste().executer();
+    }
+
+    // position dans le fichier de l'octet qui contient le point (x, y)
+    // erreur signalant, dans un fichier corrompu ou d'un autre format, un demi-octet qui
+    // n'est le numéro d'ordre d'aucun niveau de gris
+    private static IllegalStateException niveauInvalide(int niveau, int position) {
+        return new IllegalStateException("niveau de gris invalide (" + niveau + ") dans l'octet "
+                + position + " du fichier");
+    }
+
+    private int indice(int x, int y) {
+        if(x < 0 || x >= largeur || y < 0 || y >= hauteur){
+            throw new IndexOutOfBoundsException("(" + x + ", " + y + ") hors de l'image");
+        }
+        return FormatBinaire.ENTETE + y * parLigne + (x >>> 1);
+    }
+}
@@ -0,0 +1,553 @@
+import image.ImageGrise;
+import image.NiveauGris;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Image en niveaux de gris rangée dans un unique tableau d'octets : chaque case contient
+ * le numéro d'ordre (<code>ordinal()</code>) du niveau de gris d'un point, les lignes
+ * étant placées les unes à la suite des autres (le point (x, y) est à l'indice
+ * <code>y * largeur + x</code>). Un point n'occupe ainsi qu'un octet, et les opérations
+ * sont de simples boucles sur des entiers.
+ * <p>
+ * L'image garde un rectangle qui contient tous ses points non blancs (voir
+ * <code>Cadre</code>) : les opérations pour lesquelles un point blanc donne toujours le même
+ * résultat ne parcourent que ce rectangle, et remplissent le reste d'un seul coup.
+ */
+public class ImageOctets implements ImageGrise {
+
+    private static final int BLANC = NiveauGris.BLANC.ordinal();
+    private static final int NOIR = NiveauGris.NOIR.ordinal();
+
+    private byte[] pixels;
+    private int largeur;
+    private int hauteur;
+    // nombre de points de chaque niveau de gris (null s'il faut le recalculer)
+    private int[] histogramme;
+    // nombre de modifications effectives des points (voir version())
+    private long version;
+    // rectangle qui contient tous les points non blancs
+    private Cadre cadre;
+    // vrai si les opérations doivent être réparties sur plusieurs threads
+    private boolean parallele;
+
+    public ImageOctets(int largeur, int hauteur) {
+        this.largeur = largeur;
+        this.hauteur = hauteur;
+        // BLANC a le numéro d'ordre 0 : le tableau est déjà entièrement blanc
+        this.pixels = new byte[largeur * hauteur];
+        this.histogramme = new int[NiveauGris.NB_NIVEAUX];
+        this.histogramme[BLANC] = largeur * hauteur;
+        this.cadre = Cadre.vide();
+    }
+
+    // image formée du tableau de points spécifié, rangé comme pixels et utilisé sans copie
+    // (son histogramme sera calculé à la demande, son cadre couvre toute l'image)
+    private ImageOctets(int largeur, int hauteur, byte[] pixels) {
+        this.largeur = largeur;
+        this.hauteur = hauteur;
+        this.pixels = pixels;
+        this.cadre = Cadre.plein(largeur, hauteur);
+    }
+
+    /**
+     * Retourne l'image dont les numéros d'ordre des points sont rangés, ligne après ligne,
+     * dans le tableau spécifié ; le tableau n'est pas recopié et ne doit plus être modifié
+     * par l'appelant
+     *
+     * @param largeur
+     * @param hauteur
+     * @param ordinaux
+     */
+    static ImageOctets deOrdinaux(int largeur, int hauteur, byte[] ordinaux) {
+        return new ImageOctets(largeur, hauteur, ordinaux);
+    }
+
+    /**
+     * Active ou désactive l'exécution parallèle des opérations : l'image est découpée en
+     * bandes de lignes traitées sur le <code>ForkJoinPool</code> commun (les petites images
+     * restent traitées séquentiellement). Les images calculées à partir de celle-ci
+     * héritent du mode choisi.
+     *
+     * @param parallele
+     */
+    public void definirParallele(boolean parallele) {
+        this.parallele = parallele;
+    }
+
+    /**
+     * Indique si les opérations sont exécutées en parallèle
+     */
+    public boolean estParallele() {
+        return parallele;
+    }
+
+    /**
+     * Retourne la largeur de l’image
+     */
+    @Override
+    public int largeur() {
+        return largeur;
+    }
+
+    /**
+     * Retourne la hauteur de l’image
+     */
+    @Override
+    public int hauteur() {
+        return hauteur;
+    }
+
+    /**
+     * Retourne le niveau de gris du point de coordonnées (x,y)
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public NiveauGris pointEn(int x, int y) {
+        return NiveauGris.deOrdinal(pixels[indice(x, y)]);
+    }
+
+    /**
+     * Fixe le niveau de gris du point de coordonnées (x,y) à la valeur spécifiée
+     *
+     * @param x
+     * @param y
+     * @param gris
+     */
+    @Override
+    public void definirPoint(int x, int y, NiveauGris gris) {
+        ecrire(x, y, gris.ordinal());
+    }
+
+    /**
+     * Met en noir le point de coordonnées (x,y)
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public void allumer(int x, int y) {
+        ecrire(x, y, NOIR);
+    }
+
+    /**
+     * Met en blanc le point de coordonnées (x,y)
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public void eteindre(int x, int y) {
+        ecrire(x, y, BLANC);
+    }
+
+    /**
+     * Donne une valeur aléatoire (noir ou blanc) à chaque point de l’image
+     */
+    @Override
+    public void randomize() {
+        randomize(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Donne à chaque point de l’image une valeur aléatoire (noir ou blanc) tirée à partir
+     * de la graine spécifiée ; les lignes sont tirées directement dans le tableau, en parallèle si
+     * l'image est en mode parallèle, avec le même résultat
+     *
+     * @param graine
+     */
+    @Override
+    public void randomize(long graine) {
+        TraitementParBandes.executer(hauteur, largeur, parallele, (debut, fin) -> {
+            for(int y = debut; y < fin; y++){
+                NiveauGris.tirerLigneNB(graine, y, pixels, y * largeur, largeur);
+            }
+        });
+        histogramme = null;
+        cadre = Cadre.plein(largeur, hauteur);
+        version++;
+    }
+
+    /**
+     * Copie les numéros d'ordre des points d'un morceau de ligne, d'un seul bloc
+     *
+     * @param x
+     * @param y
+     * @param nombre
+     * @param ordinaux
+     * @param debut
+     */
+    @Override
+    public void lireLigne(int x, int y, int nombre, byte[] ordinaux, int debut) {
+        verifierZone(x, y, nombre, 1);
+        System.arraycopy(pixels, y * largeur + x, ordinaux, debut, nombre);
+    }
+
+    /**
+     * Fixe les points d'un morceau de ligne aux numéros d'ordre spécifiés, copiés d'un
+     * bloc ; l'histogramme et le cadre ne sont mis à jour qu'une fois pour le morceau
+     *
+     * @param x
+     * @param y
+     * @param nombre
+     * @param ordinaux
+     * @param debut
+     */
+    @Override
+    public void ecrireLigne(int x, int y, int nombre, byte[] ordinaux, int debut) {
+        verifierZone(x, y, nombre, 1);
+        int base = y * largeur + x;
+        if(histogramme != null){
+            for(int k = 0; k < nombre; k++){
+                histogramme[pixels[base + k]]--;
+                histogramme[ordinaux[debut + k]]++;
+            }
+        }
+        int premier = 0;
+        while(premier < nombre && ordinaux[debut + premier] == BLANC){
+            premier++;
+        }
+        if(premier < nombre){
+            int dernier = nombre - 1;
+            while(ordinaux[debut + dernier] == BLANC){
+                dernier--;
+            }
+            cadre.etendre(x + premier, y);
+            cadre.etendre(x + dernier, y);
+        }
+        System.arraycopy(ordinaux, debut, pixels, base, nombre);
+        version++;
+    }
+
+    /**
+     * Fixe tous les points d'un rectangle au niveau de gris spécifié, une ligne du
+     * rectangle à la fois
+     *
+     * @param x
+     * @param y
+     * @param largeur
+     * @param hauteur
+     * @param gris
+     */
+    @Override
+    public void remplir(int x, int y, int largeur, int hauteur, NiveauGris gris) {
+        verifierZone(x, y, largeur, hauteur);
+        if(largeur == 0 || hauteur == 0){
+            return;
+        }
+        for(int j = y; j < y + hauteur; j++){
+            Arrays.fill(pixels, j * this.largeur + x, j * this.largeur + x + largeur, (byte) gris.ordinal());
+        }
+        histogramme = null;
+        if(gris != NiveauGris.BLANC){
+            cadre.etendre(x, y);
+            cadre.etendre(x + largeur - 1, y + hauteur - 1);
+        }
+        version++;
+    }
+
+    /**
+     * Compte le nombre de points de l’image dont le niveau de gris est égal au niveau spécifié
+     *
+     * @param gris
+     */
+    @Override
+    public int compterPoints(NiveauGris gris) {
+        return comptes()[gris.ordinal()];
+    }
+
+    /**
+     * Retourne une image qui est le négatif de l’image courante
+     */
+    @Override
+    public ImageGrise inverser() {
+        return transformer(NiveauGris.tableInverser());
+    }
+
+    /**
+     * Retourne une image dont tous les points (sauf blancs) sont un niveau
+     * plus clair que dans l’image courante
+     */
+    @Override
+    public ImageGrise eclaircir() {
+        return transformer(NiveauGris.tableEclaircir());
+    }
+
+    /**
+     * Retourne une image dont tous les points (sauf noirs) sont un niveau
+     * plus foncé que dans l’image courante
+     */
+    @Override
+    public ImageGrise assombrir() {
+        return transformer(NiveauGris.tableAssombrir());
+    }
+
+    /**
+     * Retourne une <B>copie</B> de l’image courante
+     */
+    @Override
+    public ImageGrise dupliquer() {
+        ImageOctets image = resultat();
+        TraitementParBandes.executer(hauteur, largeur, parallele, (debut, fin) ->
+                System.arraycopy(pixels, debut * largeur, image.pixels, debut * largeur, (fin - debut) * largeur));
+        if(histogramme != null){
+            image.histogramme = histogramme.clone();
+        }
+        image.cadre = cadre.copie();
+        return image;
+    }
+
+    /**
+     * Retourne une image en additionnant point par point les niveaux de gris de l’image
+     * courante et de l’image en paramètre (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise ajouter(ImageGrise img) {
+        return combiner(img, NiveauGris.tableAjouter());
+    }
+
+    /**
+     * Retourne une image en retranchant point par point les niveaux de gris de l’image
+     * courante et de l’image en paramètre (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise soustraire(ImageGrise img) {
+        return combiner(img, NiveauGris.tableSoustraire());
+    }
+
+    /**
+     * Retourne une image en faisant un OU Exclusif (XOR) point par
+     * point les niveaux de gris de l’image courante et de l’image en
+     * paramètre (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise XOR(ImageGrise img) {
+        return combiner(img, NiveauGris.tableXOR());
+    }
+
+    /**
+     * Retourne une image qui représente "l’intersection" de l’image courante et de l’image
+     * en paramètre : seuls les points qui ont le même niveau de gris dans les deux images sont
+     * conservés (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise intersection(ImageGrise img) {
+        return combiner(img, NiveauGris.tableIntersection());
+    }
+
+    /**
+     * Retourne le niveau de gris moyen de l’image. Pour le calculer, il faut faire la
+     * moyenne des niveaux de chaque point de l’image (ce qui revient à compter combien il y
+     * a de points de chaque niveau de gris possible)
+     */
+    @Override
+    public NiveauGris niveauMoyen() {
+        return NiveauGris.moyenne(comptes());
+    }
+
+    /**
+     * Retourne le nombre de points de chaque niveau de gris. Il est calculé en un seul
+     * parcours, puis conservé et tenu à jour à chaque modification d'un point.
+     */
+    @Override
+    public int[] histogramme() {
+        return comptes().clone();
+    }
+
+    /**
+     * Retourne le numéro de version de l’image, augmenté à chaque modification effective
+     * d’un point
+     */
+    @Override
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Retourne une image obtenue en augmentant le contraste de l’image courante. Pour
+     * augmenter le contraste, il faut rendre les points sombres plus sombres qu’ils ne sont,
+     * et les points clairs plus clairs. Un bon moyen de procéder consiste à calculer le
+     * niveau de gris moyen de l’image, et assombrir (respectivement eclaircir) les points
+     * plus sombres (resp. plus clairs) que ce niveau moyen
+     */
+    @Override
+    public ImageGrise augmenterContraste() {
+        return transformer(NiveauGris.tableContraste(this.niveauMoyen()));
+    }
+
+    // nouvelle image dont chaque point est l'image par la table (indicée par numéro
+    // d'ordre) du point correspondant ; hors du cadre, où tous les points sont blancs, elle
+    // vaut table[BLANC] sans qu'aucun point soit lu
+    private ImageOctets transformer(int[] table) {
+        ImageOctets image = resultat();
+        byte[] res = image.pixels;
+        if(table[BLANC] != BLANC){
+            Arrays.fill(res, (byte) table[BLANC]);
+        }
+        else {
+            image.cadre = cadre.copie();
+        }
+        int x0 = cadre.x0, x1 = cadre.x1, y0 = cadre.y0;
+        TraitementParBandes.executer(cadre.hauteur(), cadre.largeur(), parallele, (debut, fin) -> {
+            if(x1 - x0 == largeur){
+                // lignes entières : une seule boucle sur des points contigus
+                for(int i = (y0 + debut) * largeur; i < (y0 + fin) * largeur; i++){
+                    res[i] = (byte) table[pixels[i]];
+                }
+                return;
+            }
+            for(int y = y0 + debut; y < y0 + fin; y++){
+                for(int i = y * largeur + x0, finLigne = y * largeur + x1; i < finLigne; i++){
+                    res[i] = (byte) table[pixels[i]];
+                }
+            }
+        });
+        return image;
+    }
+
+    // nouvelle image dont chaque point est la combinaison par la table (indicée par numéros
+    // d'ordre) des points correspondants des deux images, ou null si elles ne sont pas de
+    // même taille. Seule la zone où l'une des images au moins (ou les deux, si un point
+    // blanc donne toujours un point blanc) a des points non blancs est parcourue.
+    private ImageOctets combiner(ImageGrise img, int[][] table) {
+        if(img.largeur() != largeur || img.hauteur() != hauteur){
+            return null;
+        }
+        Cadre cadreAutre = img instanceof ImageOctets ? ((ImageOctets) img).cadre : Cadre.plein(largeur, hauteur);
+        Cadre zone = blancAbsorbant(table) ? cadre.intersection(cadreAutre) : cadre.union(cadreAutre);
+        ImageOctets image = resultat();
+        byte[] res = image.pixels;
+        if(table[BLANC][BLANC] != BLANC){
+            Arrays.fill(res, (byte) table[BLANC][BLANC]);
+        }
+        else {
+            image.cadre = zone.copie();
+        }
+        byte[] autre = octetsDe(img, zone);
+        int x0 = zone.x0, x1 = zone.x1, y0 = zone.y0;
+        TraitementParBandes.executer(zone.hauteur(), zone.largeur(), parallele, (debut, fin) -> {
+            if(x1 - x0 == largeur){
+                // lignes entières : une seule boucle sur des points contigus
+                for(int i = (y0 + debut) * largeur; i < (y0 + fin) * largeur; i++){
+                    res[i] = (byte) table[pixels[i]][autre[i]];
+                }
+                return;
+            }
+            for(int y = y0 + debut; y < y0 + fin; y++){
+                for(int i = y * largeur + x0, finLigne = y * largeur + x1; i < finLigne; i++){
+                    res[i] = (byte) table[pixels[i]][autre[i]];
+                }
+            }
+        });
+        return image;
+    }
+
+    // indique si la combinaison d'un point blanc avec n'importe quel niveau (d'un côté
+    // comme de l'autre) donne toujours un point blanc
+    private static boolean blancAbsorbant(int[][] table) {
+        for(int n = 0; n < table.length; n++){
+            if(table[BLANC][n] != BLANC || table[n][BLANC] != BLANC){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // l'histogramme conservé, recalculé s'il n'est plus valide : seuls les points du cadre
+    // sont lus (les autres sont blancs), et le cadre est resserré au passage
+    private int[] comptes() {
+        if(histogramme == null){
+            int[] h = new int[NiveauGris.NB_NIVEAUX];
+            Cadre serre = Cadre.vide();
+            for(int y = cadre.y0; y < cadre.y1; y++){
+                for(int x = cadre.x0, i = y * largeur + x; x < cadre.x1; x++, i++){
+                    h[pixels[i]]++;
+                    if(pixels[i] != BLANC){
+                        serre.etendre(x, y);
+                    }
+                }
+            }
+            h[BLANC] += largeur * hauteur - (int) cadre.aire();
+            histogramme = h;
+            cadre = serre;
+        }
+        return histogramme;
+    }
+
+    // indice du point (x, y) dans le tableau des points ; un point hors de l'image est
+    // refusé, son indice pouvant désigner un point d'une autre ligne
+    private int indice(int x, int y) {
+        if(x < 0 || x >= largeur || y < 0 || y >= hauteur){
+            throw new IndexOutOfBoundsException("(" + x + ", " + y + ") hors de l'image");
+        }
+        return y * largeur + x;
+    }
+
+    // vérifie que le rectangle est dans l'image (un indice linéaire hors de l'image
+    // pourrait désigner un point d'une autre ligne)
+    private void verifierZone(int x, int y, int l, int h) {
+        if(x < 0 || y < 0 || l < 0 || h < 0 || x + l > largeur || y + h > hauteur){
+            throw new IndexOutOfBoundsException("rectangle (" + x + ", " + y + ", " + l + ", " + h
+                    + ") hors de l'image " + largeur + " x " + hauteur);
+        }
+    }
+
+    // fixe le numéro d'ordre du point (x, y) en tenant l'histogramme et le cadre à jour
+    private void ecrire(int x, int y, int niveau) {
+        int i = indice(x, y);
+        if(pixels[i] == niveau){
+            return;
+        }
+        if(histogramme != null){
+            histogramme[pixels[i]]--;
+            histogramme[niveau]++;
+        }
+        pixels[i] = (byte) niveau;
+        if(niveau != BLANC){
+            cadre.etendre(x, y);
+        }
+        version++;
+    }
+
+    // nouvelle image de même taille, destinée à être remplie directement (son
+    // histogramme sera calculé à la demande ; son cadre couvre toute l'image, à moins que
+    // l'opération ne le précise)
+    private ImageOctets resultat() {
+        ImageOctets image = new ImageOctets(largeur, hauteur);
+        image.histogramme = null;
+        image.cadre = Cadre.plein(largeur, hauteur);
+        image.parallele = parallele;
+        return image;
+    }
+
+    /**
+     * Retourne les points d'une image de même taille sous la forme d'un tableau d'octets
+     * (directement le tableau interne si c'est une <code>ImageOctets</code>) ; pour une autre
+     * image, seuls les points de la zone spécifiée sont lus
+     *
+     * @param img
+     * @param zone
+     */
+    private static byte[] octetsDe(ImageGrise img, Cadre zone) {
+        if(img instanceof ImageOctets){
+            return ((ImageOctets) img).pixels;
+        }
+        int largeur = img.largeur();
+        byte[] octets = new byte[largeur * img.hauteur()];
+        for(int j = zone.y0; j < zone.y1; j++){
+            img.lireLigne(zone.x0, j, zone.largeur(), octets, j * largeur + zone.x0);
+        }
+        return octets;
+    }
+}
@@ -0,0 +1,623 @@
+import image.ImageGrise;
+import image.NiveauGris;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Image en niveaux de gris codée par plages (Run-Length Encoding) : chaque ligne est
+ * une suite de plages (niveau de gris, longueur) où deux plages voisines ont toujours
+ * des niveaux différents. Les images de type document (grandes zones blanches ou
+ * noires) n'occupent ainsi que quelques plages par ligne, et les opérations travaillent
+ * directement sur les plages : leur coût dépend du nombre de plages, pas du nombre de points.
+ */
+public class ImageRLE implements ImageGrise {
+
+
+    /**
+     * Une ligne de l'image : la plage k a le niveau <code>niveaux[k]</code> et s'étend
+     * jusqu'à l'abscisse <code>fins[k]</code> exclue (elle commence à la fin de la
+     * plage précédente).
+     */
+    private static class Ligne {
+        private byte[] niveaux = new byte[4];
+        private int[] fins = new int[4];
+        private int nb;
+
+        // ajoute une plage en fin de ligne (fusionnée avec la dernière si même niveau)
+        void ajouterPlage(int niveau, int longueur) {
+            if(longueur == 0){
+                return;
+            }
+            int debut = nb == 0 ? 0 : fins[nb - 1];
+            if(nb > 0 && niveaux[nb - 1] == niveau){
+                fins[nb - 1] = debut + longueur;
+                return;
+            }
+            if(nb == fins.length){
+                agrandir(nb + 1);
+            }
+            niveaux[nb] = (byte) niveau;
+            fins[nb] = debut + longueur;
+            nb++;
+        }
+
+        // indice de la plage contenant l'abscisse x (recherche dichotomique)
+        int plageEn(int x) {
+            int bas = 0, haut = nb - 1;
+            while(bas < haut){
+                int milieu = (bas + haut) >>> 1;
+                if(fins[milieu] > x){
+                    haut = milieu;
+                }
+                else {
+                    bas = milieu + 1;
+                }
+            }
+            return bas;
+        }
+
+        int niveauEn(int x) {
+            return niveaux[plageEn(x)];
+        }
+
+        // copie les niveaux des points x .. x+nombre-1, une plage à la fois
+        void lire(int x, int nombre, byte[] ordinaux, int debut) {
+            int position = x;
+            for(int k = nombre == 0 ? nb : plageEn(x); position < x + nombre; k++){
+                int fin = Math.min(fins[k], x + nombre);
+                Arrays.fill(ordinaux, debut + position - x, debut + fin - x, niveaux[k]);
+                position = fin;
+            }
+        }
+
+        // ajoute en fin de ligne les plages de la ligne source comprises entre les
+        // abscisses de (incluse) et a (exclue)
+        void ajouterExtrait(Ligne source, int de, int a) {
+            int position = de;
+            for(int k = de >= a ? source.nb : source.plageEn(de); position < a; k++){
+                int fin = Math.min(source.fins[k], a);
+                ajouterPlage(source.niveaux[k], fin - position);
+                position = fin;
+            }
+        }
+
+        // fixe le niveau du point d'abscisse x en découpant la plage qui le contient
+        // et en la fusionnant si besoin avec ses voisines ; retourne l'ancien niveau
+        int definir(int x, int niveau) {
+            int k = plageEn(x);
+            int ancien = niveaux[k];
+            if(ancien == niveau){
+                return ancien;
+            }
+            int debut = k == 0 ? 0 : fins[k - 1];
+            int fin = fins[k];
+            boolean resteAGauche = x > debut;
+            boolean resteADroite = fin > x + 1;
+            boolean fusionGauche = !resteAGauche && k > 0 && niveaux[k - 1] == niveau;
+            boolean fusionDroite = !resteADroite && k + 1 < nb && niveaux[k + 1] == niveau;
+
+            byte[] nouveauxNiveaux = new byte[3];
+            int[] nouvellesFins = new int[3];
+            int n = 0;
+            if(resteAGauche){
+                nouveauxNiveaux[n] = (byte) ancien;
+                nouvellesFins[n++] = x;
+            }
+            if(fusionGauche){
+                fins[k - 1] = fusionDroite ? fins[k + 1] : x + 1;
+            }
+            else if(!fusionDroite){
+                nouveauxNiveaux[n] = (byte) niveau;
+                nouvellesFins[n++] = x + 1;
+            }
+            if(resteADroite){
+                nouveauxNiveaux[n] = (byte) ancien;
+                nouvellesFins[n++] = fin;
+            }
+            remplacer(k, fusionGauche && fusionDroite ? 2 : 1, nouveauxNiveaux, nouvellesFins, n);
+            return ancien;
+        }
+
+        // remplace les plages k .. k+nbRetirees-1 par les n plages données
+        private void remplacer(int k, int nbRetirees, byte[] nouveauxNiveaux, int[] nouvellesFins, int n) {
+            int decalage = n - nbRetirees;
+            if(nb + decalage > fins.length){
+                agrandir(nb + decalage);
+            }
+            System.arraycopy(niveaux, k + nbRetirees, niveaux, k + n, nb - k - nbRetirees);
+            System.arraycopy(fins, k + nbRetirees, fins, k + n, nb - k - nbRetirees);
+            System.arraycopy(nouveauxNiveaux, 0, niveaux, k, n);
+            System.arraycopy(nouvellesFins, 0, fins, k, n);
+            nb += decalage;
+        }
+
+        private void agrandir(int minimum) {
+            int taille = Math.max(minimum, 2 * fins.length);
+            byte[] n = new byte[taille];
+            int[] f = new int[taille];
+            System.arraycopy(niveaux, 0, n, 0, nb);
+            System.arraycopy(fins, 0, f, 0, nb);
+            niveaux = n;
+            fins = f;
+        }
+
+        // nouvelle ligne où chaque plage a pour niveau op(niveau)
+        Ligne transformer(IntUnaryOperator op) {
+            Ligne ligne = new Ligne();
+            int debut = 0;
+            for(int k = 0; k < nb; k++){
+                ligne.ajouterPlage(op.applyAsInt(niveaux[k]), fins[k] - debut);
+                debut = fins[k];
+            }
+            return ligne;
+        }
+
+        // nouvelle ligne combinant point par point cette ligne et l'autre : on parcourt
+        // les deux suites de plages en parallèle, en coupant aux fins de chacune
+        Ligne combiner(Ligne autre, IntBinaryOperator op) {
+            Ligne ligne = new Ligne();
+            int i = 0, j = 0, position = 0;
+            while(i < nb && j < autre.nb){
+                int fin = Math.min(fins[i], autre.fins[j]);
+                ligne.ajouterPlage(op.applyAsInt(niveaux[i], autre.niveaux[j]), fin - position);
+                position = fin;
+                if(fins[i] == fin){
+                    i++;
+                }
+                if(autre.fins[j] == fin){
+                    j++;
+                }
+            }
+            return ligne;
+        }
+
+        // ajoute à l'histogramme la longueur de chaque plage
+        void compter(int[] histogramme) {
+            int debut = 0;
+            for(int k = 0; k < nb; k++){
+                histogramme[niveaux[k]] += fins[k] - debut;
+                debut = fins[k];
+            }
+        }
+
+        Ligne copie() {
+            Ligne ligne = new Ligne();
+            ligne.niveaux = niveaux.clone();
+            ligne.fins = fins.clone();
+            ligne.nb = nb;
+            return ligne;
+        }
+    }
+
+    private Ligne[] lignes;
+    private int largeur;
+    private int hauteur;
+    // nombre de points de chaque niveau de gris (null s'il faut le recalculer)
+    private int[] histogramme;
+    // nombre de modifications effectives des points (voir version())
+    private long version;
+
+    public ImageRLE(int largeur, int hauteur) {
+        this.largeur = largeur;
+        this.hauteur = hauteur;
+        this.lignes = new Ligne[hauteur];
+        for(int j = 0; j < hauteur; j++){
+            this.lignes[j] = new Ligne();
+            this.lignes[j].ajouterPlage(NiveauGris.BLANC.ordinal(), largeur);
+        }
+        this.histogramme = new int[NiveauGris.NB_NIVEAUX];
+        this.histogramme[NiveauGris.BLANC.ordinal()] = largeur * hauteur;
+    }
+
+    // image formée des lignes calculées (son histogramme sera calculé à la demande)
+    private ImageRLE(int largeur, int hauteur, Ligne[] lignes) {
+        this.largeur = largeur;
+        this.hauteur = hauteur;
+        this.lignes = lignes;
+    }
+
+    /**
+     * Retourne la largeur de l’image
+     */
+    @Override
+    public int largeur() {
+        return largeur;
+    }
+
+    /**
+     * Retourne la hauteur de l’image
+     */
+    @Override
+    public int hauteur() {
+        return hauteur;
+    }
+
+    /**
+     * Retourne le nombre total de plages de l'image (mesure de sa taille en mémoire)
+     */
+    public int nbPlages() {
+        int result = 0;
+        for(Ligne ligne : lignes){
+            result += ligne.nb;
+        }
+        return result;
+    }
+
+    /**
+     * Retourne le niveau de gris du point de coordonnées (x,y)
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public NiveauGris pointEn(int x, int y) {
+        verifierPoint(x, y);
+        return NiveauGris.deOrdinal(lignes[y].niveauEn(x));
+    }
+
+    /**
+     * Fixe le niveau de gris du point de coordonnées (x,y) à la valeur spécifiée
+     *
+     * @param x
+     * @param y
+     * @param gris
+     */
+    @Override
+    public void definirPoint(int x, int y, NiveauGris gris) {
+        ecrire(x, y, gris.ordinal());
+    }
+
+    /**
+     * Met en noir le point de coordonnées (x,y)
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public void allumer(int x, int y) {
+        ecrire(x, y, NiveauGris.NOIR.ordinal());
+    }
+
+    /**
+     * Met en blanc le point de coordonnées (x,y)
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public void eteindre(int x, int y) {
+        ecrire(x, y, NiveauGris.BLANC.ordinal());
+    }
+
+    /**
+     * Donne une valeur aléatoire (noir ou blanc) à chaque point de l’image
+     */
+    @Override
+    public void randomize() {
+        randomize(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Donne à chaque point de l’image une valeur aléatoire (noir ou blanc) tirée à partir
+     * de la graine spécifiée
+     *
+     * @param graine
+     */
+    @Override
+    public void randomize(long graine) {
+        byte[] points = new byte[largeur];
+        for(int j = 0; j < hauteur; j++){
+            NiveauGris.tirerLigneNB(graine, j, points, 0, largeur);
+            Ligne ligne = new Ligne();
+            for(int i = 0; i < largeur; i++){
+                ligne.ajouterPlage(points[i], 1);
+            }
+            lignes[j] = ligne;
+        }
+        histogramme = null;
+        version++;
+    }
+
+    /**
+     * Copie les numéros d'ordre des points d'un morceau de ligne, une plage à la fois
+     *
+     * @param x
+     * @param y
+     * @param nombre
+     * @param ordinaux
+     * @param debut
+     */
+    @Override
+    public void lireLigne(int x, int y, int nombre, byte[] ordinaux, int debut) {
+        verifierZone(x, y, nombre, 1);
+        lignes[y].lire(x, nombre, ordinaux, debut);
+    }
+
+    /**
+     * Fixe les points d'un morceau de ligne aux numéros d'ordre spécifiés : la ligne est
+     * recodée en une fois (plages avant le morceau, points du morceau, plages après)
+     *
+     * @param x
+     * @param y
+     * @param nombre
+     * @param ordinaux
+     * @param debut
+     */
+    @Override
+    public void ecrireLigne(int x, int y, int nombre, byte[] ordinaux, int debut) {
+        verifierZone(x, y, nombre, 1);
+        byte[] anciens = new byte[nombre];
+        lignes[y].lire(x, nombre, anciens, 0);
+        int modifies = 0;
+        for(int k = 0; k < nombre; k++){
+            if(anciens[k] != ordinaux[debut + k]){
+                if(histogramme != null){
+                    histogramme[anciens[k]]--;
+                    histogramme[ordinaux[debut + k]]++;
+                }
+                modifies++;
+            }
+        }
+        if(modifies == 0){
+            return;
+        }
+        Ligne ligne = new Ligne();
+        ligne.ajouterExtrait(lignes[y], 0, x);
+        for(int k = 0; k < nombre; k++){
+            ligne.ajouterPlage(ordinaux[debut + k], 1);
+        }
+        ligne.ajouterExtrait(lignes[y], x + nombre, largeur);
+        lignes[y] = ligne;
+        version++;
+    }
+
+    /**
+     * Fixe tous les points d'un rectangle au niveau de gris spécifié : chaque ligne du
+     * rectangle reçoit une seule plage
+     *
+     * @param x
+     * @param y
+     * @param largeur
+     * @param hauteur
+     * @param gris
+     */
+    @Override
+    public void remplir(int x, int y, int largeur, int hauteur, NiveauGris gris) {
+        verifierZone(x, y, largeur, hauteur);
+        if(largeur == 0 || hauteur == 0){
+            return;
+        }
+        for(int j = y; j < y + hauteur; j++){
+            Ligne ligne = new Ligne();
+            ligne.ajouterExtrait(lignes[j], 0, x);
+            ligne.ajouterPlage(gris.ordinal(), largeur);
+            ligne.ajouterExtrait(lignes[j], x + largeur, this.largeur);
+            lignes[j] = ligne;
+        }
+        histogramme = null;
+        version++;
+    }
+
+    /**
+     * Compte le nombre de points de l’image dont le niveau de gris est égal au niveau spécifié
+     *
+     * @param gris
+     */
+    @Override
+    public int compterPoints(NiveauGris gris) {
+        return comptes()[gris.ordinal()];
+    }
+
+    /**
+     * Retourne une image qui est le négatif de l’image courante
+     */
+    @Override
+    public ImageGrise inverser() {
+        return transformer(NiveauGris::inverserOrdinal);
+    }
+
+    /**
+     * Retourne une image dont tous les points (sauf blancs) sont un niveau
+     * plus clair que dans l’image courante
+     */
+    @Override
+    public ImageGrise eclaircir() {
+        return transformer(NiveauGris::eclaircirOrdinal);
+    }
+
+    /**
+     * Retourne une image dont tous les points (sauf noirs) sont un niveau
+     * plus foncé que dans l’image courante
+     */
+    @Override
+    public ImageGrise assombrir() {
+        return transformer(NiveauGris::assombrirOrdinal);
+    }
+
+    /**
+     * Retourne une <B>copie</B> de l’image courante
+     */
+    @Override
+    public ImageGrise dupliquer() {
+        Ligne[] copies = new Ligne[hauteur];
+        for(int j = 0; j < hauteur; j++){
+            copies[j] = lignes[j].copie();
+        }
+        ImageRLE image = new ImageRLE(largeur, hauteur, copies);
+        if(histogramme != null){
+            image.histogramme = histogramme.clone();
+        }
+        return image;
+    }
+
+    /**
+     * Retourne une image en additionnant point par point les niveaux de gris de l’image
+     * courante et de l’image en paramètre (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise ajouter(ImageGrise img) {
+        return combiner(img, NiveauGris::ajouterOrdinaux);
+    }
+
+    /**
+     * Retourne une image en retranchant point par point les niveaux de gris de l’image
+     * courante et de l’image en paramètre (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise soustraire(ImageGrise img) {
+        return combiner(img, NiveauGris::soustraireOrdinaux);
+    }
+
+    /**
+     * Retourne une image en faisant un OU Exclusif (XOR) point par
+     * point les niveaux de gris de l’image courante et de l’image en
+     * paramètre (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise XOR(ImageGrise img) {
+        return combiner(img, NiveauGris::XOROrdinaux);
+    }
+
+    /**
+     * Retourne une image qui représente "l’intersection" de l’image courante et de l’image
+     * en paramètre : seuls les points qui ont le même niveau de gris dans les deux images sont
+     * conservés (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise intersection(ImageGrise img) {
+        return combiner(img, NiveauGris::intersectionOrdinaux);
+    }
+
+    /**
+     * Retourne le niveau de gris moyen de l’image. Pour le calculer, il faut faire la
+     * moyenne des niveaux de chaque point de l’image (ce qui revient à compter combien il y
+     * a de points de chaque niveau de gris possible)
+     */
+    @Override
+    public NiveauGris niveauMoyen() {
+        return NiveauGris.moyenne(comptes());
+    }
+
+    /**
+     * Retourne le nombre de points de chaque niveau de gris. Il est calculé en un seul
+     * parcours des plages, puis conservé et tenu à jour à chaque modification d'un point.
+     */
+    @Override
+    public int[] histogramme() {
+        return comptes().clone();
+    }
+
+    /**
+     * Retourne le numéro de version de l’image, augmenté à chaque modification effective
+     * d’un point
+     */
+    @Override
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Retourne une image obtenue en augmentant le contraste de l’image courante. Pour
+     * augmenter le contraste, il faut rendre les points sombres plus sombres qu’ils ne sont,
+     * et les points clairs plus clairs. Un bon moyen de procéder consiste à calculer le
+     * niveau de gris moyen de l’image, et assombrir (respectivement eclaircir) les points
+     * plus sombres (resp. plus clairs) que ce niveau moyen
+     */
+    @Override
+    public ImageGrise augmenterContraste() {
+        int[] table = NiveauGris.tableContraste(this.niveauMoyen());
+        return transformer(niveau -> table[niveau]);
+    }
+
+    // vérifie que le point est dans l'image (une abscisse au-delà de la largeur
+    // allongerait la ligne au lieu d'échouer)
+    private void verifierPoint(int x, int y) {
+        if(x < 0 || x >= largeur || y < 0 || y >= hauteur){
+            throw new IndexOutOfBoundsException("(" + x + ", " + y + ") hors de l'image");
+        }
+    }
+
+    // vérifie que le rectangle est dans l'image
+    private void verifierZone(int x, int y, int l, int h) {
+        if(x < 0 || y < 0 || l < 0 || h < 0 || x + l > largeur || y + h > hauteur){
+            throw new IndexOutOfBoundsException("rectangle (" + x + ", " + y + ", " + l + ", " + h
+                    + ") hors de l'image " + largeur + " x " + hauteur);
+        }
+    }
+
+    // fixe le niveau d'un point en tenant l'histogramme à jour
+    private void ecrire(int x, int y, int niveau) {
+        verifierPoint(x, y);
+        int ancien = lignes[y].definir(x, niveau);
+        if(ancien == niveau){
+            return;
+        }
+        if(histogramme != null){
+            histogramme[ancien]--;
+            histogramme[niveau]++;
+        }
+        version++;
+    }
+
+    // l'histogramme conservé, recalculé s'il n'est plus valide
+    private int[] comptes() {
+        if(histogramme == null){
+            int[] h = new int[NiveauGris.NB_NIVEAUX];
+            for(Ligne ligne : lignes){
+                ligne.compter(h);
+            }
+            histogramme = h;
+        }
+        return histogramme;
+    }
+
+    // image dont chaque plage est transformée par op
+    private ImageRLE transformer(IntUnaryOperator op) {
+        Ligne[] resultat = new Ligne[hauteur];
+        for(int j = 0; j < hauteur; j++){
+            resultat[j] = lignes[j].transformer(op);
+        }
+        return new ImageRLE(largeur, hauteur, resultat);
+    }
+
+    // image combinant ligne à ligne l'image courante et img (null si tailles différentes)
+    private ImageRLE combiner(ImageGrise img, IntBinaryOperator op) {
+        if(img.largeur() != largeur || img.hauteur() != hauteur){
+            return null;
+        }
+        ImageRLE autre = rleDe(img);
+        Ligne[] resultat = new Ligne[hauteur];
+        for(int j = 0; j < hauteur; j++){
+            resultat[j] = lignes[j].combiner(autre.lignes[j], op);
+        }
+        return new ImageRLE(largeur, hauteur, resultat);
+    }
+
+    // l'image en paramètre si elle est déjà codée par plages, sinon sa version codée
+    private static ImageRLE rleDe(ImageGrise img) {
+        if(img instanceof ImageRLE){
+            return (ImageRLE) img;
+        }
+        Ligne[] lignes = new Ligne[img.hauteur()];
+        byte[] points = new byte[img.largeur()];
+        for(int j = 0; j < img.hauteur(); j++){
+            img.lireLigne(0, j, points.length, points, 0);
+            lignes[j] = new Ligne();
+            for(int i = 0; i < points.length; i++){
+                lignes[j].ajouterPlage(points[i], 1);
+            }
+        }
+        return new ImageRLE(img.largeur(), img.hauteur(), lignes);
+    }
+}
@@ -1,11 +1,23 @@
 import image.ImageGrise;
 import image.NiveauGris;
 
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
 public class ImageTab implements ImageGrise {
 
     private NiveauGris[][] nv;
     private int largeur;
     private int hauteur;
+    // nombre de points de chaque niveau de gris (null s'il faut le recalculer)
+    private int[] histogramme;
+    // nombre de modifications effectives des points (voir version())
+    private long version;
+    // rectangle qui contient tous les points non blancs : hors de lui, les opérations pour
+    // lesquelles un point blanc donne toujours le même résultat ne lisent aucun point
+    private Cadre cadre;
+    // vrai si les opérations doivent être réparties sur plusieurs threads
+    private boolean parallele;
 
     public ImageTab(int largeur, int hauteur) {
         this.largeur = largeur;
@@ -16,6 +28,37 @@ public class ImageTab implements ImageGrise {
                 this.nv[i][j] = NiveauGris.BLANC;
             }
         }
+        this.histogramme = new int[NiveauGris.NB_NIVEAUX];
+        this.histogramme[NiveauGris.BLANC.ordinal()] = largeur * hauteur;
+        this.cadre = Cadre.vide();
+    }
+
+    // image dont tous les points seront fixés par l'opération qui la calcule
+    private ImageTab(int largeur, int hauteur, boolean parallele) {
+        this.largeur = largeur;
+        this.hauteur = hauteur;
+        this.nv = new NiveauGris[largeur][hauteur];
+        this.parallele = parallele;
+        this.cadre = Cadre.plein(largeur, hauteur);
+    }
+
+    /**
+     * Active ou désactive l'exécution parallèle des opérations : l'image est découpée en
+     * bandes de colonnes traitées sur le <code>ForkJoinPool</code> commun (les petites
+     * images restent traitées séquentiellement). Le résultat est identique dans les deux
+     * modes, et les images calculées à partir de celle-ci héritent du mode choisi.
+     *
+     * @param parallele
+     */
+    public void definirParallele(boolean parallele) {
+        this.parallele = parallele;
+    }
+
+    /**
+     * Indique si les opérations sont exécutées en parallèle
+     */
+    public boolean estParallele() {
+        return parallele;
     }
 
     /**
@@ -54,7 +97,7 @@ public class ImageTab implements ImageGrise {
      */
     @Override
     public void definirPoint(int x, int y, NiveauGris gris) {
-        nv[x][y] = gris;
+        ecrire(x, y, gris);
     }
 
     /**
@@ -65,7 +108,7 @@ public class ImageTab implements ImageGrise {
      */
     @Override
     public void allumer(int x, int y) {
-        nv[x][y] = NiveauGris.NOIR;
+        ecrire(x, y, NiveauGris.NOIR);
     }
 
     /**
@@ -76,7 +119,7 @@ public class ImageTab implements ImageGrise {
      */
     @Override
     public void eteindre(int x, int y) {
-        nv[x][y] = NiveauGris.BLANC;
+        ecrire(x, y, NiveauGris.BLANC);
     }
 
     /**
@@ -84,13 +127,93 @@ public class ImageTab implements ImageGrise {
      */
     @Override
     public void randomize() {
-        for(int i = 0; i < this.largeur; i++){
-            for(int j = 0; j < this.hauteur; j++){
-                this.nv[i][j] = NiveauGris.randomizeNB();
+        randomize(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Donne à chaque point de l’image une valeur aléatoire (noir ou blanc) tirée à partir
+     * de la graine spécifiée ; les lignes sont tirées en parallèle si l'image est en mode parallèle,
+     * avec le même résultat
+     *
+     * @param graine
+     */
+    @Override
+    public void randomize(long graine) {
+        TraitementParBandes.executer(hauteur, largeur, parallele, (debut, fin) -> {
+            byte[] ligne = new byte[largeur];
+            for(int j = debut; j < fin; j++){
+                NiveauGris.tirerLigneNB(graine, j, ligne, 0, largeur);
+                for(int i = 0; i < largeur; i++){
+                    this.nv[i][j] = NiveauGris.deOrdinal(ligne[i]);
+                }
             }
+        });
+        this.histogramme = null;
+        this.cadre = Cadre.plein(largeur, hauteur);
+        version++;
+    }
+
+    /**
+     * Copie les numéros d'ordre des points d'un morceau de ligne
+     *
+     * @param x
+     * @param y
+     * @param nombre
+     * @param ordinaux
+     * @param debut
+     */
+    @Override
+    public void lireLigne(int x, int y, int nombre, byte[] ordinaux, int debut) {
+        verifierZone(x, y, nombre, 1);
+        for(int k = 0; k < nombre; k++){
+            ordinaux[debut + k] = (byte) this.nv[x + k][y].ordinal();
+        }
+    }
+
+    /**
+     * Fixe les points d'un morceau de ligne aux numéros d'ordre spécifiés
+     *
+     * @param x
+     * @param y
+     * @param nombre
+     * @param ordinaux
+     * @param debut
+     */
+    @Override
+    public void ecrireLigne(int x, int y, int nombre, byte[] ordinaux, int debut) {
+        verifierZone(x, y, nombre, 1);
+        for(int k = 0; k < nombre; k++){
+            ecrire(x + k, y, NiveauGris.deOrdinal(ordinaux[debut + k]));
         }
     }
 
+    /**
+     * Fixe tous les points d'un rectangle au niveau de gris spécifié, une colonne du
+     * rectangle à la fois
+     *
+     * @param x
+     * @param y
+     * @param largeur
+     * @param hauteur
+     * @param gris
+     */
+    @Override
+    public void remplir(int x, int y, int largeur, int hauteur, NiveauGris gris) {
+        verifierZone(x, y, largeur, hauteur);
+        if(largeur == 0 || hauteur == 0){
+            return;
+        }
+        for(int i = x; i < x + largeur; i++){
+            Arrays.fill(this.nv[i], y, y + hauteur, gris);
+        }
+        this.histogramme = null;
+        if(gris != NiveauGris.BLANC){
+            cadre.etendre(x, y);
+            cadre.etendre(x + largeur - 1, y + hauteur - 1);
+        }
+        version++;
+    }
+
     /**
      * Compte le nombre de points de l’image dont le niveau de gris est égal au niveau spécifié
      *
@@ -98,15 +221,7 @@ public class ImageTab implements ImageGrise {
      */
     @Override
     public int compterPoints(NiveauGris gris) {
-        int result = 0;
-        for(int i = 0; i < this.largeur; i++){
-            for(int j = 0; j < this.hauteur; j++){
-                if(this.nv[i][j] == gris){
-                    result++;
-                }
-            }
-        }
-        return result;
+        return comptes()[gris.ordinal()];
     }
 
     /**
@@ -114,13 +229,15 @@ public class ImageTab implements ImageGrise {
      */
     @Override
     public ImageGrise inverser() {
-        ImageGrise imageGrise = new ImageTab(largeur, hauteur);
-        for(int i = 0; i < this.largeur; i++){
-            for(int j = 0; j < this.hauteur; j++){
-                imageGrise.definirPoint(i, j, this.nv[i][j].inverser());
+        ImageTab imageTab = new ImageTab(largeur, hauteur, parallele);
+        TraitementParBandes.executer(largeur, hauteur, parallele, (debut, fin) -> {
+            for(int i = debut; i < fin; i++){
+                for(int j = 0; j < this.hauteur; j++){
+                    imageTab.nv[i][j] = this.nv[i][j].inverser();
+                }
             }
-        }
-        return imageGrise;
+        });
+        return imageTab;
     }
 
     /**
@@ -129,15 +246,16 @@ public class ImageTab implements ImageGrise {
      */
     @Override
     public ImageGrise eclaircir() {
-        ImageGrise imageGrise = new ImageTab(largeur, hauteur);
-        for(int i = 0; i < this.largeur; i++){
-            for(int j = 0; j < this.hauteur; j++){
-                if(!this.nv[i][j].estBlanc()){
-                    imageGrise.definirPoint(i, j, this.nv[i][j].eclaircir());
+        ImageTab imageTab = resultat(cadre, NiveauGris.BLANC);
+        int x0 = cadre.x0, y0 = cadre.y0, y1 = cadre.y1;
+        TraitementParBandes.executer(cadre.largeur(), cadre.hauteur(), parallele, (debut, fin) -> {
+            for(int i = x0 + debut; i < x0 + fin; i++){
+                for(int j = y0; j < y1; j++){
+                    imageTab.nv[i][j] = this.nv[i][j].estBlanc() ? NiveauGris.BLANC : this.nv[i][j].eclaircir();
                 }
             }
-        }
-        return imageGrise;
+        });
+        return imageTab;
     }
 
     /**
@@ -146,15 +264,16 @@ public class ImageTab implements ImageGrise {
      */
     @Override
     public ImageGrise assombrir() {
-        ImageGrise imageGrise = new ImageTab(largeur, hauteur);
-        for(int i = 0; i < this.largeur; i++){
-            for(int j = 0; j < this.hauteur; j++){
-                if(!this.nv[i][j].estNoir()){
-                    imageGrise.definirPoint(i, j, this.nv[i][j].assombrir());
+        ImageTab imageTab = resultat(cadre, NiveauGris.BLANC.assombrir());
+        int x0 = cadre.x0, y0 = cadre.y0, y1 = cadre.y1;
+        TraitementParBandes.executer(cadre.largeur(), cadre.hauteur(), parallele, (debut, fin) -> {
+            for(int i = x0 + debut; i < x0 + fin; i++){
+                for(int j = y0; j < y1; j++){
+                    imageTab.nv[i][j] = this.nv[i][j].assombrir();
                 }
             }
-        }
-        return imageGrise;
+        });
+        return imageTab;
     }
 
     /**
@@ -162,13 +281,17 @@ public class ImageTab implements ImageGrise {
      */
     @Override
     public ImageGrise dupliquer() {
-        ImageGrise imageGrise = new ImageTab(largeur, hauteur);
-        for(int i = 0; i < this.largeur; i++){
-            for(int j = 0; j < this.hauteur; j++){
-                imageGrise.definirPoint(i, j, pointEn(i, j));
+        ImageTab imageTab = new ImageTab(largeur, hauteur, parallele);
+        TraitementParBandes.executer(largeur, hauteur, parallele, (debut, fin) -> {
+            for(int i = debut; i < fin; i++){
+                System.arraycopy(this.nv[i], 0, imageTab.nv[i], 0, hauteur);
             }
+        });
+        if(histogramme != null){
+            imageTab.histogramme = histogramme.clone();
         }
-        return imageGrise;
+        imageTab.cadre = cadre.copie();
+        return imageTab;
     }
 
     /**
@@ -179,18 +302,21 @@ public class ImageTab implements ImageGrise {
      */
     @Override
     public ImageGrise ajouter(ImageGrise img) {
-        ImageGrise imageGrise = new ImageTab(largeur, hauteur);
         if(img.largeur() != largeur || img.hauteur() != hauteur){
             return null;
         }
-        else {
-            for(int i = 0; i < largeur; i++){
-                for(int j = 0; j < hauteur; j++){
-                    imageGrise.definirPoint(i, j, pointEn(i, j).ajouter(img.pointEn(i, j)));
+        Cadre zone = img instanceof ImageTab ? cadre.union(((ImageTab) img).cadre) : Cadre.plein(largeur, hauteur);
+        NiveauGris[][] autre = niveauxDe(img, zone);
+        ImageTab imageTab = resultat(zone, NiveauGris.BLANC.ajouter(NiveauGris.BLANC));
+        int x0 = zone.x0, y0 = zone.y0, y1 = zone.y1;
+        TraitementParBandes.executer(zone.largeur(), zone.hauteur(), parallele, (debut, fin) -> {
+            for(int i = x0 + debut; i < x0 + fin; i++){
+                for(int j = y0; j < y1; j++){
+                    imageTab.nv[i][j] = this.nv[i][j].ajouter(autre[i][j]);
                 }
             }
-        }
-        return imageGrise;
+        });
+        return imageTab;
     }
 
     /**
@@ -201,18 +327,19 @@ public class ImageTab implements ImageGrise {
      */
     @Override
     public ImageGrise soustraire(ImageGrise img) {
-        ImageGrise imageGrise = new ImageTab(largeur, hauteur);
         if(img.largeur() != largeur || img.hauteur() != hauteur){
             return null;
         }
-        else {
-            for(int i = 0; i < largeur; i++){
+        ImageTab imageTab = new ImageTab(largeur, hauteur, parallele);
+        NiveauGris[][] autre = niveauxDe(img, Cadre.plein(largeur, hauteur));
+        TraitementParBandes.executer(largeur, hauteur, parallele, (debut, fin) -> {
+            for(int i = debut; i < fin; i++){
                 for(int j = 0; j < hauteur; j++){
-                    imageGrise.definirPoint(i, j, pointEn(i, j).soustraire(img.pointEn(i, j)));
+                    imageTab.nv[i][j] = this.nv[i][j].soustraire(autre[i][j]);
                 }
             }
-        }
-        return imageGrise;
+        });
+        return imageTab;
     }
 
     /**
@@ -224,18 +351,19 @@ public class ImageTab implements ImageGrise {
      */
     @Override
     public ImageGrise XOR(ImageGrise img) {
-        ImageGrise imageGrise = new ImageTab(largeur, hauteur);
         if(img.largeur() != largeur || img.hauteur() != hauteur){
             return null;
         }
-        else {
-            for(int i = 0; i < largeur; i++){
+        ImageTab imageTab = new ImageTab(largeur, hauteur, parallele);
+        NiveauGris[][] autre = niveauxDe(img, Cadre.plein(largeur, hauteur));
+        TraitementParBandes.executer(largeur, hauteur, parallele, (debut, fin) -> {
+            for(int i = debut; i < fin; i++){
                 for(int j = 0; j < hauteur; j++){
-                    imageGrise.definirPoint(i, j, pointEn(i, j).XOR(img.pointEn(i, j)));
+                    imageTab.nv[i][j] = this.nv[i][j].XOR(autre[i][j]);
                 }
             }
-        }
-        return imageGrise;
+        });
+        return imageTab;
     }
 
     /**
@@ -247,24 +375,21 @@ public class ImageTab implements ImageGrise {
      */
     @Override
     public ImageGrise intersection(ImageGrise img) {
-        ImageGrise imageGrise = new ImageTab(largeur, hauteur);
         if(img.largeur() != largeur || img.hauteur() != hauteur){
             return null;
         }
-        else {
-            for(int i = 0; i < largeur; i++){
-                for(int j = 0; j < hauteur; j++){
-                    if(this.pointEn(i, j) == img.pointEn(i, j)){
-                        imageGrise.definirPoint(i, j, pointEn(i, j));
-                    }
-                    else {
-                        imageGrise.definirPoint(i, j, pointEn(i, j));
-                        imageGrise.eteindre(i, j);
-                    }
+        Cadre zone = img instanceof ImageTab ? cadre.intersection(((ImageTab) img).cadre) : cadre;
+        NiveauGris[][] autre = niveauxDe(img, zone);
+        ImageTab imageTab = resultat(zone, NiveauGris.BLANC);
+        int x0 = zone.x0, y0 = zone.y0, y1 = zone.y1;
+        TraitementParBandes.executer(zone.largeur(), zone.hauteur(), parallele, (debut, fin) -> {
+            for(int i = x0 + debut; i < x0 + fin; i++){
+                for(int j = y0; j < y1; j++){
+                    imageTab.nv[i][j] = this.nv[i][j].intersection(autre[i][j]);
                 }
             }
-        }
-        return imageGrise;
+        });
+        return imageTab;
     }
 
     /**
@@ -274,18 +399,55 @@ public class ImageTab implements ImageGrise {
      */
     @Override
     public NiveauGris niveauMoyen() {
-        int niveauBlanc = compterPoints(NiveauGris.BLANC);
-        int niveauGrisClair = compterPoints(NiveauGris.GRIS_CLAIR);
-        int niveauGrisMoyen = compterPoints(NiveauGris.GRIS_MOYEN);
-        int niveauGrisFonce = compterPoints(NiveauGris.GRIS_FONCE);
-        int niveauNoir = compterPoints(NiveauGris.NOIR);
-        int somme = niveauBlanc + niveauGrisClair + niveauGrisMoyen + niveauGrisFonce + niveauNoir;
-        int result = (niveauBlanc * NiveauGris.BLANC.ordinal()) + (niveauGrisClair * NiveauGris.GRIS_CLAIR.ordinal()) +
-                (niveauGrisMoyen * NiveauGris.GRIS_MOYEN.ordinal()) + (niveauGrisFonce * NiveauGris.GRIS_FONCE.ordinal()) +
-                (niveauNoir * NiveauGris.NOIR.ordinal());
-        result = result / somme;
-        return NiveauGris.values()[result];
+        return NiveauGris.moyenne(comptes());
+    }
+
+    /**
+     * Retourne le nombre de points de chaque niveau de gris. Il est calculé en un seul
+     * parcours, puis conservé et tenu à jour à chaque modification d'un point.
+     */
+    @Override
+    public int[] histogramme() {
+        return comptes().clone();
+    }
+
+    // vérifie que le rectangle est dans l'image avant toute écriture, pour ne pas en
+    // laisser une partie modifiée sans que l'histogramme et la version le sachent
+    private void verifierZone(int x, int y, int l, int h) {
+        if(x < 0 || y < 0 || l < 0 || h < 0 || x + l > largeur || y + h > hauteur){
+            throw new IndexOutOfBoundsException("rectangle (" + x + ", " + y + ", " + l + ", " + h
+                    + ") hors de l'image " + largeur + " x " + hauteur);
+        }
+    }
+
+    // l'histogramme conservé, recalculé s'il n'est plus valide : seuls les points du cadre
+    // sont lus (les autres sont blancs), et le cadre est resserré au passage
+    private int[] comptes() {
+        if(histogramme == null){
+            int[] h = new int[NiveauGris.NB_NIVEAUX];
+            Cadre serre = Cadre.vide();
+            for(int i = cadre.x0; i < cadre.x1; i++){
+                for(int j = cadre.y0; j < cadre.y1; j++){
+                    h[this.nv[i][j].ordinal()]++;
+                    if(this.nv[i][j] != NiveauGris.BLANC){
+                        serre.etendre(i, j);
+                    }
+                }
+            }
+            h[NiveauGris.BLANC.ordinal()] += largeur * hauteur - (int) cadre.aire();
+            histogramme = h;
+            cadre = serre;
+        }
+        return histogramme;
+    }
 
+    /**
+     * Retourne le numéro de version de l’image, augmenté à chaque modification effective
+     * d’un point
+     */
+    @Override
+    public long version() {
+        return version;
     }
 
     /**
@@ -297,19 +459,86 @@ public class ImageTab implements ImageGrise {
      */
     @Override
     public ImageGrise augmenterContraste() {
-        ImageGrise imageGrise = new ImageTab(largeur, hauteur);
+        ImageTab imageTab = new ImageTab(largeur, hauteur, parallele);
         NiveauGris niveauMoyen = this.niveauMoyen();
-        for(int i = 0; i < this.largeur; i++){
-            for(int j = 0; j < this.hauteur; j++){
-                NiveauGris niveauGrisInstance = pointEn(i, j);
-                if(niveauGrisInstance.ordinal() > niveauMoyen.ordinal()){
-                    imageGrise.definirPoint(i, j, pointEn(i, j).assombrir());
-                }
-                else if(niveauGrisInstance.ordinal() < niveauMoyen.ordinal()){
-                    imageGrise.definirPoint(i, j, pointEn(i, j).eclaircir());
+        TraitementParBandes.executer(largeur, hauteur, parallele, (debut, fin) -> {
+            for(int i = debut; i < fin; i++){
+                for(int j = 0; j < this.hauteur; j++){
+                    NiveauGris niveauGrisInstance = this.nv[i][j];
+                    if(niveauGrisInstance.ordinal() > niveauMoyen.ordinal()){
+                        imageTab.nv[i][j] = niveauGrisInstance.assombrir();
+                    }
+                    else if(niveauGrisInstance.ordinal() < niveauMoyen.ordinal()){
+                        imageTab.nv[i][j] = niveauGrisInstance.eclaircir();
+                    }
+                    else {
+                        imageTab.nv[i][j] = niveauGrisInstance;
+                    }
                 }
             }
+        });
+        return imageTab;
+    }
+
+    // image résultat dont les points hors de la zone valent tous le niveau spécifié (ceux de
+    // la zone sont à fixer par l'opération) ; si ce niveau est blanc, la zone est son cadre
+    private ImageTab resultat(Cadre zone, NiveauGris dehors) {
+        ImageTab imageTab = new ImageTab(largeur, hauteur, parallele);
+        for(int i = 0; i < largeur; i++){
+            if(i < zone.x0 || i >= zone.x1){
+                Arrays.fill(imageTab.nv[i], dehors);
+            }
+            else {
+                Arrays.fill(imageTab.nv[i], 0, zone.y0, dehors);
+                Arrays.fill(imageTab.nv[i], zone.y1, hauteur, dehors);
+            }
+        }
+        if(dehors == NiveauGris.BLANC){
+            imageTab.cadre = zone.copie();
+        }
+        return imageTab;
+    }
+
+    /**
+     * Retourne les niveaux des points d'une image de même taille, rangés comme dans
+     * <code>nv</code> (directement le tableau interne si c'est une <code>ImageTab</code>) ;
+     * pour une autre image, seuls les points de la zone spécifiée sont lus, d'un seul bloc
+     *
+     * @param img
+     * @param zone
+     */
+    private static NiveauGris[][] niveauxDe(ImageGrise img, Cadre zone) {
+        if(img instanceof ImageTab){
+            return ((ImageTab) img).nv;
+        }
+        int l = zone.largeur(), h = zone.hauteur();
+        byte[] ordinaux = new byte[l * h];
+        img.lireRegion(zone.x0, zone.y0, l, h, ordinaux);
+        // seules les colonnes de la zone sont allouées
+        NiveauGris[][] niveaux = new NiveauGris[img.largeur()][];
+        for(int i = 0; i < l; i++){
+            NiveauGris[] colonne = new NiveauGris[img.hauteur()];
+            for(int j = 0; j < h; j++){
+                colonne[zone.y0 + j] = NiveauGris.deOrdinal(ordinaux[j * l + i]);
+            }
+            niveaux[zone.x0 + i] = colonne;
+        }
+        return niveaux;
+    }
+
+    // fixe le niveau d'un point en tenant l'histogramme et le cadre à jour
+    private void ecrire(int x, int y, NiveauGris gris) {
+        if(nv[x][y] == gris){
+            return;
+        }
+        if(histogramme != null){
+            histogramme[nv[x][y].ordinal()]--;
+            histogramme[gris.ordinal()]++;
+        }
+        nv[x][y] = gris;
+        if(gris != NiveauGris.BLANC){
+            cadre.etendre(x, y);
         }
-        return imageGrise;
+        version++;
     }
 }
@@ -0,0 +1,588 @@
+import image.ImageGrise;
+import image.NiveauGris;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Image en niveaux de gris découpée en tuiles carrées de 64x64 points. Chaque tuile est :
+ * <UL><LI>soit <B>uniforme</B> : on ne range alors que son niveau de gris (une image neuve
+ * n'est faite que de tuiles uniformes blanches)</LI>
+ * <LI>soit un tableau de 64x64 octets (numéros d'ordre des niveaux de gris), qui peut être
+ * <B>partagé</B> entre plusieurs images : il n'est recopié qu'au moment où l'une d'elles
+ * le modifie (copie sur écriture)</LI></UL>
+ * Ainsi <code>dupliquer()</code> ne copie que les références des tuiles, et les opérations
+ * ne créent de nouveau tableau que pour les tuiles qu'elles modifient réellement.
+ */
+public class ImageTuiles implements ImageGrise {
+
+    private static final int COTE = 64;
+    private static final int POINTS_PAR_TUILE = COTE * COTE;
+
+    private int largeur;
+    private int hauteur;
+    private int nbTuilesX;
+    private int nbTuilesY;
+    // contenu des tuiles non uniformes (null pour une tuile uniforme)
+    private byte[][] tuiles;
+    // niveau des tuiles uniformes
+    private byte[] uniformes;
+    // vrai si le tableau de la tuile peut être utilisé par une autre image
+    private boolean[] partagees;
+    // nombre de points de chaque niveau de gris (null s'il faut le recalculer)
+    private int[] histogramme;
+    // nombre de modifications effectives des points (voir version())
+    private long version;
+
+    public ImageTuiles(int largeur, int hauteur) {
+        this.largeur = largeur;
+        this.hauteur = hauteur;
+        this.nbTuilesX = (largeur + COTE - 1) / COTE;
+        this.nbTuilesY = (hauteur + COTE - 1) / COTE;
+        int nbTuiles = nbTuilesX * nbTuilesY;
+        this.tuiles = new byte[nbTuiles][];
+        // BLANC a le numéro d'ordre 0 : toutes les tuiles sont uniformément blanches
+        this.uniformes = new byte[nbTuiles];
+        this.partagees = new boolean[nbTuiles];
+        this.histogramme = new int[NiveauGris.NB_NIVEAUX];
+        this.histogramme[NiveauGris.BLANC.ordinal()] = largeur * hauteur;
+    }
+
+    /**
+     * Retourne la largeur de l’image
+     */
+    @Override
+    public int largeur() {
+        return largeur;
+    }
+
+    /**
+     * Retourne la hauteur de l’image
+     */
+    @Override
+    public int hauteur() {
+        return hauteur;
+    }
+
+    /**
+     * Retourne le nombre de tuiles qui ne sont pas uniformes (et occupent donc un tableau)
+     */
+    public int nbTuilesDetaillees() {
+        int result = 0;
+        for(byte[] tuile : tuiles){
+            if(tuile != null){
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Retourne le niveau de gris du point de coordonnées (x,y)
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public NiveauGris pointEn(int x, int y) {
+        verifierPoint(x, y);
+        int t = (y / COTE) * nbTuilesX + x / COTE;
+        if(tuiles[t] == null){
+            return NiveauGris.deOrdinal(uniformes[t]);
+        }
+        return NiveauGris.deOrdinal(tuiles[t][(y % COTE) * COTE + x % COTE]);
+    }
+
+    /**
+     * Fixe le niveau de gris du point de coordonnées (x,y) à la valeur spécifiée
+     *
+     * @param x
+     * @param y
+     * @param gris
+     */
+    @Override
+    public void definirPoint(int x, int y, NiveauGris gris) {
+        ecrire(x, y, gris.ordinal());
+    }
+
+    /**
+     * Met en noir le point de coordonnées (x,y)
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public void allumer(int x, int y) {
+        ecrire(x, y, NiveauGris.NOIR.ordinal());
+    }
+
+    /**
+     * Met en blanc le point de coordonnées (x,y)
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public void eteindre(int x, int y) {
+        ecrire(x, y, NiveauGris.BLANC.ordinal());
+    }
+
+    /**
+     * Donne une valeur aléatoire (noir ou blanc) à chaque point de l’image
+     */
+    @Override
+    public void randomize() {
+        randomize(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Donne à chaque point de l’image une valeur aléatoire (noir ou blanc) tirée à partir
+     * de la graine spécifiée (les points des tuiles du bord qui sont hors de l'image restent
+     * blancs)
+     *
+     * @param graine
+     */
+    @Override
+    public void randomize(long graine) {
+        for(int t = 0; t < tuiles.length; t++){
+            tuiles[t] = new byte[POINTS_PAR_TUILE];
+            partagees[t] = false;
+        }
+        byte[] ligne = new byte[largeur];
+        for(int y = 0; y < hauteur; y++){
+            NiveauGris.tirerLigneNB(graine, y, ligne, 0, largeur);
+            for(int tx = 0; tx < nbTuilesX; tx++){
+                System.arraycopy(ligne, tx * COTE, tuiles[(y / COTE) * nbTuilesX + tx], (y % COTE) * COTE,
+                        Math.min(COTE, largeur - tx * COTE));
+            }
+        }
+        histogramme = null;
+        version++;
+    }
+
+    /**
+     * Copie les numéros d'ordre des points d'un morceau de ligne, un morceau de tuile à la
+     * fois (rempli d'un coup si la tuile est uniforme)
+     *
+     * @param x
+     * @param y
+     * @param nombre
+     * @param ordinaux
+     * @param debut
+     */
+    @Override
+    public void lireLigne(int x, int y, int nombre, byte[] ordinaux, int debut) {
+        verifierZone(x, y, nombre, 1);
+        int ty = y / COTE;
+        for(int i = x; i < x + nombre; ){
+            int t = ty * nbTuilesX + i / COTE;
+            int n = Math.min(COTE - i % COTE, x + nombre - i);
+            if(tuiles[t] == null){
+                Arrays.fill(ordinaux, debut + i - x, debut + i - x + n, uniformes[t]);
+            }
+            else {
+                System.arraycopy(tuiles[t], (y % COTE) * COTE + i % COTE, ordinaux, debut + i - x, n);
+            }
+            i += n;
+        }
+    }
+
+    /**
+     * Fixe les points d'un morceau de ligne aux numéros d'ordre spécifiés
+     *
+     * @param x
+     * @param y
+     * @param nombre
+     * @param ordinaux
+     * @param debut
+     */
+    @Override
+    public void ecrireLigne(int x, int y, int nombre, byte[] ordinaux, int debut) {
+        verifierZone(x, y, nombre, 1);
+        for(int k = 0; k < nombre; k++){
+            ecrire(x + k, y, ordinaux[debut + k]);
+        }
+    }
+
+    /**
+     * Fixe tous les points d'un rectangle au niveau de gris spécifié : les tuiles dont le
+     * rectangle couvre toute la partie dans l'image deviennent uniformes, les autres sont
+     * remplies ligne par ligne
+     *
+     * @param x
+     * @param y
+     * @param largeur
+     * @param hauteur
+     * @param gris
+     */
+    @Override
+    public void remplir(int x, int y, int largeur, int hauteur, NiveauGris gris) {
+        verifierZone(x, y, largeur, hauteur);
+        if(largeur == 0 || hauteur == 0){
+            return;
+        }
+        byte niveau = (byte) gris.ordinal();
+        for(int ty = y / COTE; ty <= (y + hauteur - 1) / COTE; ty++){
+            for(int tx = x / COTE; tx <= (x + largeur - 1) / COTE; tx++){
+                int t = ty * nbTuilesX + tx;
+                // partie du rectangle dans la tuile, en coordonnées de la tuile
+                int i0 = Math.max(x - tx * COTE, 0);
+                int i1 = Math.min(x + largeur - tx * COTE, COTE);
+                int j0 = Math.max(y - ty * COTE, 0);
+                int j1 = Math.min(y + hauteur - ty * COTE, COTE);
+                boolean couverte = i0 == 0 && j0 == 0
+                        && i1 >= Math.min(COTE, this.largeur - tx * COTE)
+                        && j1 >= Math.min(COTE, this.hauteur - ty * COTE);
+                if(couverte){
+                    tuiles[t] = null;
+                    uniformes[t] = niveau;
+                    partagees[t] = false;
+                }
+                else if(tuiles[t] != null || uniformes[t] != niveau){
+                    byte[] tuile = tuileModifiable(t);
+                    for(int j = j0; j < j1; j++){
+                        Arrays.fill(tuile, j * COTE + i0, j * COTE + i1, niveau);
+                    }
+                }
+            }
+        }
+        histogramme = null;
+        version++;
+    }
+
+    /**
+     * Compte le nombre de points de l’image dont le niveau de gris est égal au niveau spécifié
+     *
+     * @param gris
+     */
+    @Override
+    public int compterPoints(NiveauGris gris) {
+        return comptes()[gris.ordinal()];
+    }
+
+    /**
+     * Retourne une image qui est le négatif de l’image courante
+     */
+    @Override
+    public ImageGrise inverser() {
+        return transformer(NiveauGris::inverserOrdinal);
+    }
+
+    /**
+     * Retourne une image dont tous les points (sauf blancs) sont un niveau
+     * plus clair que dans l’image courante
+     */
+    @Override
+    public ImageGrise eclaircir() {
+        return transformer(NiveauGris::eclaircirOrdinal);
+    }
+
+    /**
+     * Retourne une image dont tous les points (sauf noirs) sont un niveau
+     * plus foncé que dans l’image courante
+     */
+    @Override
+    public ImageGrise assombrir() {
+        return transformer(NiveauGris::assombrirOrdinal);
+    }
+
+    /**
+     * Retourne une <B>copie</B> de l’image courante
+     */
+    @Override
+    public ImageGrise dupliquer() {
+        ImageTuiles image = new ImageTuiles(largeur, hauteur);
+        for(int t = 0; t < tuiles.length; t++){
+            image.uniformes[t] = uniformes[t];
+            partager(t, image);
+        }
+        image.histogramme = histogramme == null ? null : histogramme.clone();
+        return image;
+    }
+
+    /**
+     * Retourne une image en additionnant point par point les niveaux de gris de l’image
+     * courante et de l’image en paramètre (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise ajouter(ImageGrise img) {
+        return combiner(img, NiveauGris::ajouterOrdinaux);
+    }
+
+    /**
+     * Retourne une image en retranchant point par point les niveaux de gris de l’image
+     * courante et de l’image en paramètre (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise soustraire(ImageGrise img) {
+        return combiner(img, NiveauGris::soustraireOrdinaux);
+    }
+
+    /**
+     * Retourne une image en faisant un OU Exclusif (XOR) point par
+     * point les niveaux de gris de l’image courante et de l’image en
+     * paramètre (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise XOR(ImageGrise img) {
+        return combiner(img, NiveauGris::XOROrdinaux);
+    }
+
+    /**
+     * Retourne une image qui représente "l’intersection" de l’image courante et de l’image
+     * en paramètre : seuls les points qui ont le même niveau de gris dans les deux images sont
+     * conservés (les deux images doivent être de même taille)
+     *
+     * @param img
+     */
+    @Override
+    public ImageGrise intersection(ImageGrise img) {
+        return combiner(img, NiveauGris::intersectionOrdinaux);
+    }
+
+    /**
+     * Retourne le niveau de gris moyen de l’image. Pour le calculer, il faut faire la
+     * moyenne des niveaux de chaque point de l’image (ce qui revient à compter combien il y
+     * a de points de chaque niveau de gris possible)
+     */
+    @Override
+    public NiveauGris niveauMoyen() {
+        return NiveauGris.moyenne(comptes());
+    }
+
+    /**
+     * Retourne le nombre de points de chaque niveau de gris. Il est calculé en un seul
+     * parcours (les tuiles uniformes comptent pour leur surface), puis conservé et tenu
+     * à jour à chaque modification d'un point.
+     */
+    @Override
+    public int[] histogramme() {
+        return comptes().clone();
+    }
+
+    /**
+     * Retourne le numéro de version de l’image, augmenté à chaque modification effective
+     * d’un point
+     */
+    @Override
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Retourne une image obtenue en augmentant le contraste de l’image courante. Pour
+     * augmenter le contraste, il faut rendre les points sombres plus sombres qu’ils ne sont,
+     * et les points clairs plus clairs. Un bon moyen de procéder consiste à calculer le
+     * niveau de gris moyen de l’image, et assombrir (respectivement eclaircir) les points
+     * plus sombres (resp. plus clairs) que ce niveau moyen
+     */
+    @Override
+    public ImageGrise augmenterContraste() {
+        int[] table = NiveauGris.tableContraste(this.niveauMoyen());
+        return transformer(niveau -> table[niveau]);
+    }
+
+    // fixe le numéro d'ordre d'un point, en détaillant ou en recopiant sa tuile si besoin
+    private void ecrire(int x, int y, int niveau) {
+        verifierPoint(x, y);
+        int t = (y / COTE) * nbTuilesX + x / COTE;
+        int p = (y % COTE) * COTE + x % COTE;
+        int ancien = tuiles[t] == null ? uniformes[t] : tuiles[t][p];
+        if(ancien == niveau){
+            return;
+        }
+        if(histogramme != null){
+            histogramme[ancien]--;
+            histogramme[niveau]++;
+        }
+        tuileModifiable(t)[p] = (byte) niveau;
+        version++;
+    }
+
+    // tableau de la tuile t, prêt à être modifié : une tuile uniforme est détaillée, une
+    // tuile partagée est recopiée
+    private byte[] tuileModifiable(int t) {
+        if(tuiles[t] == null){
+            tuiles[t] = new byte[POINTS_PAR_TUILE];
+            Arrays.fill(tuiles[t], uniformes[t]);
+            partagees[t] = false;
+        }
+        else if(partagees[t]){
+            tuiles[t] = tuiles[t].clone();
+            partagees[t] = false;
+        }
+        return tuiles[t];
+    }
+
+    // vérifie que le point est dans l'image (et non dans la marge d'une tuile du bord,
+    // que la grille des tuiles accepterait)
+    private void verifierPoint(int x, int y) {
+        if(x < 0 || x >= largeur || y < 0 || y >= hauteur){
+            throw new IndexOutOfBoundsException("(" + x + ", " + y + ") hors de l'image");
+        }
+    }
+
+    // vérifie que le rectangle est dans l'image
+    private void verifierZone(int x, int y, int l, int h) {
+        if(x < 0 || y < 0 || l < 0 || h < 0 || x + l > largeur || y + h > hauteur){
+            throw new IndexOutOfBoundsException("rectangle (" + x + ", " + y + ", " + l + ", " + h
+                    + ") hors de l'image " + largeur + " x " + hauteur);
+        }
+    }
+
+    // l'histogramme conservé, recalculé s'il n'est plus valide
+    private int[] comptes() {
+        if(histogramme == null){
+            int[] h = new int[NiveauGris.NB_NIVEAUX];
+            for(int ty = 0; ty < nbTuilesY; ty++){
+                for(int tx = 0; tx < nbTuilesX; tx++){
+                    int t = ty * nbTuilesX + tx;
+                    int largeurUtile = Math.min(COTE, largeur - tx * COTE);
+                    int hauteurUtile = Math.min(COTE, hauteur - ty * COTE);
+                    if(tuiles[t] == null){
+                        h[uniformes[t]] += largeurUtile * hauteurUtile;
+                        continue;
+                    }
+                    for(int j = 0; j < hauteurUtile; j++){
+                        for(int i = 0; i < largeurUtile; i++){
+                            h[tuiles[t][j * COTE + i]]++;
+                        }
+                    }
+                }
+            }
+            histogramme = h;
+        }
+        return histogramme;
+    }
+
+    // nouvelle image de même taille, destinée à recevoir des tuiles calculées (son
+    // histogramme sera calculé à la demande)
+    private ImageTuiles resultat() {
+        ImageTuiles image = new ImageTuiles(largeur, hauteur);
+        image.histogramme = null;
+        return image;
+    }
+
+    // place dans la tuile t de image le tableau de la tuile t, qui devient partagé
+    private void partager(int t, ImageTuiles image) {
+        image.tuiles[t] = tuiles[t];
+        if(tuiles[t] != null){
+            image.partagees[t] = true;
+            partagees[t] = true;
+        }
+    }
+
+    // image dont chaque point est transformé par op
+    private ImageTuiles transformer(IntUnaryOperator op) {
+        byte[] table = new byte[NiveauGris.NB_NIVEAUX];
+        for(int niveau = 0; niveau < table.length; niveau++){
+            table[niveau] = (byte) op.applyAsInt(niveau);
+        }
+        ImageTuiles image = resultat();
+        for(int t = 0; t < tuiles.length; t++){
+            transformerTuile(this, t, table, image);
+        }
+        return image;
+    }
+
+    // image combinant point par point l'image courante et img (null si tailles différentes)
+    private ImageTuiles combiner(ImageGrise img, IntBinaryOperator op) {
+        if(img.largeur() != largeur || img.hauteur() != hauteur){
+            return null;
+        }
+        ImageTuiles autre = tuilesDe(img);
+        int n = NiveauGris.NB_NIVEAUX;
+        byte[] table = new byte[n * n];
+        for(int a = 0; a < n; a++){
+            for(int b = 0; b < n; b++){
+                table[a * n + b] = (byte) op.applyAsInt(a, b);
+            }
+        }
+        ImageTuiles image = resultat();
+        byte[] ligne = new byte[n];
+        for(int t = 0; t < tuiles.length; t++){
+            if(autre.tuiles[t] == null){
+                // l'autre tuile est uniforme : c'est une transformation de celle-ci
+                for(int a = 0; a < n; a++){
+                    ligne[a] = table[a * n + autre.uniformes[t]];
+                }
+                transformerTuile(this, t, ligne, image);
+            }
+            else if(tuiles[t] == null){
+                // cette tuile est uniforme : c'est une transformation de l'autre
+                System.arraycopy(table, uniformes[t] * n, ligne, 0, n);
+                transformerTuile(autre, t, ligne, image);
+            }
+            else {
+                byte[] a = tuiles[t];
+                byte[] b = autre.tuiles[t];
+                byte[] resultat = new byte[POINTS_PAR_TUILE];
+                for(int i = 0; i < POINTS_PAR_TUILE; i++){
+                    resultat[i] = table[a[i] * n + b[i]];
+                }
+                image.placer(t, resultat);
+            }
+        }
+        return image;
+    }
+
+    // calcule dans image la tuile t de source transformée par table ; si la transformation
+    // ne change aucun point, le tableau de source est partagé au lieu d'être recopié
+    private static void transformerTuile(ImageTuiles source, int t, byte[] table, ImageTuiles image) {
+        byte[] tuile = source.tuiles[t];
+        if(tuile == null){
+            image.uniformes[t] = table[source.uniformes[t]];
+            return;
+        }
+        int i = 0;
+        while(i < POINTS_PAR_TUILE && table[tuile[i]] == tuile[i]){
+            i++;
+        }
+        if(i == POINTS_PAR_TUILE){
+            source.partager(t, image);
+            return;
+        }
+        byte[] resultat = new byte[POINTS_PAR_TUILE];
+        System.arraycopy(tuile, 0, resultat, 0, i);
+        for(; i < POINTS_PAR_TUILE; i++){
+            resultat[i] = table[tuile[i]];
+        }
+        image.placer(t, resultat);
+    }
+
+    // range une tuile nouvellement calculée, sous forme uniforme si possible
+    private void placer(int t, byte[] tuile) {
+        byte premier = tuile[0];
+        for(int i = 1; i < POINTS_PAR_TUILE; i++){
+            if(tuile[i] != premier){
+                tuiles[t] = tuile;
+                partagees[t] = false;
+                return;
+            }
+        }
+        tuiles[t] = null;
+        uniformes[t] = premier;
+    }
+
+    // l'image en paramètre si elle est déjà découpée en tuiles, sinon sa version découpée
+    private static ImageTuiles tuilesDe(ImageGrise img) {
+        if(img instanceof ImageTuiles){
+            return (ImageTuiles) img;
+        }
+        ImageTuiles image = new ImageTuiles(img.largeur(), img.hauteur());
+        byte[] ligne = new byte[img.largeur()];
+        for(int j = 0; j < img.hauteur(); j++){
+            img.lireLigne(0, j, ligne.length, ligne, 0);
+            image.ecrireLigne(0, j, ligne.length, ligne, 0);
+        }
+        return image;
+    }
+}
@@ -0,0 +1,166 @@
+import image.ImageGrise;
+import image.NiveauGris;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.BiFunction;
+
+/**
+ * Lecture d'une image au format texte du répertoire images/ : une ligne de texte par
+ * ligne de points, chaque point étant représenté par le caractère <code>code()</code> de
+ * son niveau de gris. La largeur de l'image est celle de la plus longue ligne ; les lignes
+ * plus courtes sont complétées en blanc, et les caractères inconnus sont lus comme blancs.
+ * <p>
+ * Le fichier est lu par blocs à travers un <code>FileChannel</code>, et chaque octet est
+ * décodé par une table de 256 cases. Un premier parcours du fichier détermine ses
+ * dimensions ; les lignes sont ensuite fournies une à une, sans que le fichier ne soit
+ * jamais entièrement en mémoire.
+ */
+public class LecteurTexte implements SourceLignes, Closeable {
+
+    private static final int TAILLE_TAMPON = 1 << 16;
+    // numéro d'ordre du niveau de gris représenté par chaque octet
+    private static final byte[] NIVEAUX = new byte[256];
+
+    static {
+        for(int i = 0; i < NiveauGris.NB_NIVEAUX; i++){
+            NIVEAUX[NiveauGris.deOrdinal(i).code() & 0xFF] = (byte) i;
+        }
+    }
+
+    private final FileChannel canal;
+    private final ByteBuffer tampon = ByteBuffer.allocate(TAILLE_TAMPON);
+    private final int largeur;
+    private final int hauteur;
+    private int lignesLues;
+
+    private LecteurTexte(FileChannel canal, int largeur, int hauteur) {
+        this.canal = canal;
+        this.largeur = largeur;
+        this.hauteur = hauteur;
+        tampon.limit(0);
+    }
+
+    /**
+     * Ouvre le fichier et en détermine les dimensions ; les lignes sont ensuite lues par
+     * <code>lireLigne</code>
+     *
+     * @param chemin
+     */
+    public static LecteurTexte ouvrir(Path chemin) throws IOException {
+        FileChannel canal = FileChannel.open(chemin, StandardOpenOption.READ);
+        try {
+            ByteBuffer tampon = ByteBuffer.allocate(TAILLE_TAMPON);
+            byte[] octets = tampon.array();
+            int largeur = 0, hauteur = 0, longueur = 0;
+            boolean ligneCommencee = false;
+            while(canal.read(tampon) > 0){
+                for(int i = 0; i < tampon.position(); i++){
+                    byte octet = octets[i];
+                    if(octet == '\n'){
+                        largeur = Math.max(largeur, longueur);
+                        hauteur++;
+                        longueur = 0;
+                        ligneCommencee = false;
+                    }
+                    else {
+                        ligneCommencee = true;
+                        if(octet != '\r'){
+                            longueur++;
+                        }
+                    }
+                }
+                tampon.clear();
+            }
+            if(ligneCommencee){
+                // dernière ligne sans fin de ligne
+                largeur = Math.max(largeur, longueur);
+                hauteur++;
+            }
+            canal.position(0);
+            return new LecteurTexte(canal, largeur, hauteur);
+        }
+        catch(IOException | RuntimeException e){
+            canal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Lit le fichier dans une image créée par la fabrique (à partir de la largeur et de la
+     * hauteur lues) et la retourne
+     *
+     * @param chemin
+     * @param fabrique
+     */
+    public static <I extends ImageGrise> I lire(Path chemin, BiFunction<Integer, Integer, I> fabrique) throws IOException {
+        try(LecteurTexte lecteur = ouvrir(chemin)){
+            return lecteur.copierDans(fabrique.apply(lecteur.largeur(), lecteur.hauteur()));
+        }
+    }
+
+    /**
+     * Lit le fichier dans une nouvelle <code>ImageOctets</code>
+     *
+     * @param chemin
+     */
+    public static ImageGrise lire(Path chemin) throws IOException {
+        return lire(chemin, ImageOctets::new);
+    }
+
+    @Override
+    public int largeur() {
+        return largeur;
+    }
+
+    @Override
+    public int hauteur() {
+        return hauteur;
+    }
+
+    @Override
+    public boolean lireLigne(byte[] niveaux) throws IOException {
+        if(lignesLues == hauteur){
+            return false;
+        }
+        byte[] octets = tampon.array();
+        int x = 0;
+        boolean finDeLigne = false;
+        while(!finDeLigne){
+            if(!tampon.hasRemaining()){
+                tampon.clear();
+                if(canal.read(tampon) <= 0){
+                    tampon.limit(0);
+                    break;
+                }
+                tampon.flip();
+            }
+            int i = tampon.position();
+            int fin = tampon.limit();
+            while(i < fin){
+                byte octet = octets[i++];
+                if(octet == '\n'){
+                    finDeLigne = true;
+                    break;
+                }
+                if(octet != '\r' && x < largeur){
+                    niveaux[x++] = NIVEAUX[octet & 0xFF];
+                }
+            }
+            tampon.position(i);
+        }
+        Arrays.fill(niveaux, x, largeur, (byte) NiveauGris.BLANC.ordinal());
+        lignesLues++;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+}
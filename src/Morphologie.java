@@ -0,0 +1,307 @@
+import image.ImageGrise;
+import image.NiveauGris;
+
+import java.util.Arrays;
+
+/**
+ * Morphologie en niveaux de gris : érosion, dilatation, ouverture et fermeture par un
+ * élément structurant quelconque (voir <code>ElementStructurant</code>). Les niveaux sont
+ * comparés comme par <code>NiveauGris.minimum</code> et <code>NiveauGris.maximum</code> (le
+ * maximum est le plus foncé) : la dilatation épaissit les formes sombres sur fond blanc,
+ * l'érosion les amincit, l'ouverture efface les détails sombres plus petits que l'élément
+ * (bruit, traits fins) et la fermeture comble les trous clairs plus petits que lui.
+ * <p>
+ * Chaque segment horizontal de l'élément est calculé par la méthode de van Herk et
+ * Gil-Werman : la ligne est découpée en blocs de la longueur du segment, dont on calcule
+ * les extremums cumulés depuis le début et depuis la fin de chaque bloc ; l'extremum de
+ * n'importe quelle fenêtre de cette longueur s'obtient alors en une seule comparaison.
+ * Le coût par point ne dépend donc pas de la longueur des segments, seulement de leur
+ * nombre ; un élément rectangulaire est de plus décomposé en un segment horizontal suivi
+ * d'un segment vertical, pour un coût par point constant quelle que soit sa taille.
+ * <p>
+ * Hors de l'image, les points valent l'élément neutre de l'opération (blanc pour la
+ * dilatation, noir pour l'érosion) : les bords de l'image ne sont ni épaissis ni rongés.
+ * Le résultat est une nouvelle <code>ImageOctets</code> ; le calcul peut être réparti par
+ * bandes de lignes sur plusieurs threads, avec le même résultat.
+ */
+public class Morphologie {
+
+    private static final byte BLANC = (byte) NiveauGris.BLANC.ordinal();
+    private static final byte NOIR = (byte) NiveauGris.NOIR.ordinal();
+    // nombre de lignes calculées ensemble par le passage en colonne (leurs extremums
+    // cumulés sont gardés en mémoire)
+    private static final int LIGNES_PAR_GROUPE = 64;
+
+    private Morphologie() {
+    }
+
+    /**
+     * Retourne l'érodée de l'image par l'élément : chaque point prend le niveau le plus clair
+     * des points (x + dx, y + dy) pour les décalages de l'élément
+     *
+     * @param image
+     * @param element
+     */
+    public static ImageGrise eroder(ImageGrise image, ElementStructurant element) {
+        return eroder(image, element, false);
+    }
+
+    /**
+     * Même chose, en répartissant le calcul sur plusieurs threads si demandé
+     *
+     * @param image
+     * @param element
+     * @param parallele
+     */
+    public static ImageGrise eroder(ImageGrise image, ElementStructurant element, boolean parallele) {
+        return resultat(image, eroder(ordinaux(image), image.largeur(), image.hauteur(), element, parallele), parallele);
+    }
+
+    /**
+     * Retourne la dilatée de l'image par l'élément : chaque point prend le niveau le plus
+     * foncé des points (x - dx, y - dy) pour les décalages de l'élément
+     *
+     * @param image
+     * @param element
+     */
+    public static ImageGrise dilater(ImageGrise image, ElementStructurant element) {
+        return dilater(image, element, false);
+    }
+
+    /**
+     * Même chose, en répartissant le calcul sur plusieurs threads si demandé
+     *
+     * @param image
+     * @param element
+     * @param parallele
+     */
+    public static ImageGrise dilater(ImageGrise image, ElementStructurant element, boolean parallele) {
+        return resultat(image, dilater(ordinaux(image), image.largeur(), image.hauteur(), element, parallele), parallele);
+    }
+
+    /**
+     * Retourne l'ouverture de l'image par l'élément (érosion puis dilatation) : les détails
+     * sombres où l'élément ne tient pas disparaissent, le reste est conservé
+     *
+     * @param image
+     * @param element
+     */
+    public static ImageGrise ouvrir(ImageGrise image, ElementStructurant element) {
+        return ouvrir(image, element, false);
+    }
+
+    /**
+     * Même chose, en répartissant le calcul sur plusieurs threads si demandé
+     *
+     * @param image
+     * @param element
+     * @param parallele
+     */
+    public static ImageGrise ouvrir(ImageGrise image, ElementStructurant element, boolean parallele) {
+        int largeur = image.largeur(), hauteur = image.hauteur();
+        byte[] erodee = eroder(ordinaux(image), largeur, hauteur, element, parallele);
+        return resultat(image, dilater(erodee, largeur, hauteur, element, parallele), parallele);
+    }
+
+    /**
+     * Retourne la fermeture de l'image par l'élément (dilatation puis érosion) : les trous
+     * clairs où l'élément ne tient pas sont comblés, le reste est conservé
+     *
+     * @param image
+     * @param element
+     */
+    public static ImageGrise fermer(ImageGrise image, ElementStructurant element) {
+        return fermer(image, element, false);
+    }
+
+    /**
+     * Même chose, en répartissant le calcul sur plusieurs threads si demandé
+     *
+     * @param image
+     * @param element
+     * @param parallele
+     */
+    public static ImageGrise fermer(ImageGrise image, ElementStructurant element, boolean parallele) {
+        int largeur = image.largeur(), hauteur = image.hauteur();
+        byte[] dilatee = dilater(ordinaux(image), largeur, hauteur, element, parallele);
+        return resultat(image, eroder(dilatee, largeur, hauteur, element, parallele), parallele);
+    }
+
+    // numéros d'ordre des points de l'image, ligne après ligne, lus d'un seul bloc
+    private static byte[] ordinaux(ImageGrise image) {
+        byte[] points = new byte[image.largeur() * image.hauteur()];
+        image.lireRegion(0, 0, image.largeur(), image.hauteur(), points);
+        return points;
+    }
+
+    private static ImageGrise resultat(ImageGrise image, byte[] points, boolean parallele) {
+        ImageOctets resultat = ImageOctets.deOrdinaux(image.largeur(), image.hauteur(), points);
+        resultat.definirParallele(parallele);
+        return resultat;
+    }
+
+    private static byte[] eroder(byte[] source, int largeur, int hauteur, ElementStructurant element, boolean parallele) {
+        return appliquer(source, largeur, hauteur, element, false, NOIR, parallele);
+    }
+
+    // la dilatation par l'élément est le maximum sur l'élément réfléchi
+    private static byte[] dilater(byte[] source, int largeur, int hauteur, ElementStructurant element, boolean parallele) {
+        return appliquer(source, largeur, hauteur, element.reflechi(), true, BLANC, parallele);
+    }
+
+    // résultat[x, y] = extremum des points source[x + dx, y + dy] pour les décalages de l'élément,
+    // les points hors de l'image valant neutre
+    private static byte[] appliquer(byte[] source, int largeur, int hauteur, ElementStructurant element,
+                                    boolean maximum, byte neutre, boolean parallele) {
+        byte[] resultat = new byte[largeur * hauteur];
+        if(largeur == 0 || hauteur == 0){
+            return resultat;
+        }
+        if(element.estRectangle()){
+            // segment horizontal (sur la ligne dy = 0), puis segment vertical
+            int[] segment = {0, element.debut(0), element.fin(0)};
+            byte[] lignes = new byte[largeur * hauteur];
+            TraitementParBandes.executer(hauteur, largeur, parallele, (debut, fin) ->
+                    segments(source, lignes, largeur, hauteur, new int[][]{segment}, maximum, neutre, debut, fin));
+            int dyMin = element.dyMin(), dyMax = element.dyMax();
+            TraitementParBandes.executer(hauteur, largeur, parallele, (debut, fin) ->
+                    colonnes(lignes, resultat, largeur, hauteur, dyMin, dyMax, maximum, neutre, debut, fin));
+            return resultat;
+        }
+        int[][] segments = new int[element.nbSegments()][];
+        for(int k = 0; k < segments.length; k++){
+            segments[k] = new int[]{element.dy(k), element.debut(k), element.fin(k)};
+        }
+        TraitementParBandes.executer(hauteur, largeur * segments.length, parallele, (debut, fin) ->
+                segments(source, resultat, largeur, hauteur, segments, maximum, neutre, debut, fin));
+        return resultat;
+    }
+
+    // calcule les lignes debut à fin (exclue) du résultat pour les segments {dy, dx début,
+    // dx fin} : pour chaque segment, la ligne source y + dy est bordée de points neutres,
+    // ses extremums sur les fenêtres de la longueur du segment sont calculés, puis combinés
+    // au résultat (une ligne source hors de l'image ne change rien)
+    private static void segments(byte[] source, byte[] resultat, int largeur, int hauteur, int[][] segments,
+                                 boolean maximum, byte neutre, int debut, int fin) {
+        int longueurMax = 0;
+        for(int[] segment : segments){
+            longueurMax = Math.max(longueurMax, segment[2] - segment[1] + 1);
+        }
+        byte[] etendue = new byte[largeur + 2 * (longueurMax - 1)];
+        byte[] cumulDebut = new byte[etendue.length];
+        byte[] cumulFin = new byte[etendue.length];
+        // case x + L - 1 : extremum des points x à x + L - 1 de la ligne source
+        byte[] fenetre = new byte[largeur + longueurMax - 1];
+        for(int y = debut; y < fin; y++){
+            int base = y * largeur;
+            Arrays.fill(resultat, base, base + largeur, neutre);
+            for(int[] segment : segments){
+                int s = y + segment[0];
+                if(s < 0 || s >= hauteur){
+                    continue;
+                }
+                int longueur = segment[2] - segment[1] + 1;
+                int n = largeur + 2 * (longueur - 1);
+                Arrays.fill(etendue, 0, longueur - 1, neutre);
+                System.arraycopy(source, s * largeur, etendue, longueur - 1, largeur);
+                Arrays.fill(etendue, largeur + longueur - 1, n, neutre);
+                fenetres(etendue, n, longueur, maximum, cumulDebut, cumulFin, fenetre);
+                // point x : fenêtre commençant en x + dx début, dont la case n'existe que
+                // pour certains x (les autres fenêtres sont hors de l'image)
+                int decalage = segment[1] + longueur - 1;
+                int xMin = Math.max(0, -decalage);
+                int xMax = Math.min(largeur, largeur + longueur - 1 - decalage);
+                for(int x = xMin; x < xMax; x++){
+                    resultat[base + x] = extremum(maximum, resultat[base + x], fenetre[x + decalage]);
+                }
+            }
+        }
+    }
+
+    // le plus foncé (maximum) ou le plus clair des deux numéros d'ordre, comme
+    // NiveauGris.maximum et NiveauGris.minimum
+    private static byte extremum(boolean maximum, int a, int b) {
+        return (byte) (maximum ? Math.max(a, b) : Math.min(a, b));
+    }
+
+    // van Herk / Gil-Werman sur une ligne de n points : resultat[k] = extremum des points k à
+    // k + longueur - 1, pour k de 0 à n - longueur
+    private static void fenetres(byte[] ligne, int n, int longueur, boolean maximum, byte[] cumulDebut, byte[] cumulFin,
+                                 byte[] resultat) {
+        for(int bloc = 0; bloc < n; bloc += longueur){
+            int finBloc = Math.min(bloc + longueur, n);
+            cumulDebut[bloc] = ligne[bloc];
+            for(int k = bloc + 1; k < finBloc; k++){
+                cumulDebut[k] = extremum(maximum, cumulDebut[k - 1], ligne[k]);
+            }
+            cumulFin[finBloc - 1] = ligne[finBloc - 1];
+            for(int k = finBloc - 2; k >= bloc; k--){
+                cumulFin[k] = extremum(maximum, cumulFin[k + 1], ligne[k]);
+            }
+        }
+        for(int k = 0; k + longueur <= n; k++){
+            resultat[k] = extremum(maximum, cumulFin[k], cumulDebut[k + longueur - 1]);
+        }
+    }
+
+    // même méthode en colonne, sur des lignes entières : calcule les lignes debut à fin
+    // (exclue) du résultat, chaque point étant l'extremum des points des lignes y + dyMin à
+    // y + dyMax de la même colonne
+    private static void colonnes(byte[] source, byte[] resultat, int largeur, int hauteur, int dyMin, int dyMax,
+                                 boolean maximum, byte neutre, int debut, int fin) {
+        int longueur = dyMax - dyMin + 1;
+        int taille = Math.max(LIGNES_PAR_GROUPE, longueur);
+        byte[] cumulDebut = new byte[(taille + longueur - 1) * largeur];
+        byte[] cumulFin = new byte[cumulDebut.length];
+        for(int groupe = debut; groupe < fin; groupe += taille){
+            int finGroupe = Math.min(groupe + taille, fin);
+            // lignes source premiere à premiere + n - 1, découpées en blocs de longueur lignes
+            int premiere = groupe + dyMin;
+            int n = finGroupe - groupe + longueur - 1;
+            for(int bloc = 0; bloc < n; bloc += longueur){
+                int finBloc = Math.min(bloc + longueur, n);
+                for(int k = bloc; k < finBloc; k++){
+                    cumuler(source, premiere + k, hauteur, largeur, neutre, maximum, cumulDebut, k,
+                            k == bloc ? -1 : k - 1);
+                }
+                for(int k = finBloc - 1; k >= bloc; k--){
+                    cumuler(source, premiere + k, hauteur, largeur, neutre, maximum, cumulFin, k,
+                            k == finBloc - 1 ? -1 : k + 1);
+                }
+            }
+            for(int y = groupe; y < finGroupe; y++){
+                int k = y - groupe;
+                int dansFin = k * largeur, dansDebut = (k + longueur - 1) * largeur, base = y * largeur;
+                for(int x = 0; x < largeur; x++){
+                    resultat[base + x] = extremum(maximum, cumulFin[dansFin + x], cumulDebut[dansDebut + x]);
+                }
+            }
+        }
+    }
+
+    // range à la ligne k de cumul la ligne source s (neutre hors de l'image), combinée
+    // avec la ligne precedente de cumul si elle existe (precedente >= 0)
+    private static void cumuler(byte[] source, int s, int hauteur, int largeur, byte neutre, boolean maximum,
+                                byte[] cumul, int k, int precedente) {
+        int dans = k * largeur;
+        boolean dansImage = s >= 0 && s < hauteur;
+        if(precedente < 0){
+            if(dansImage){
+                System.arraycopy(source, s * largeur, cumul, dans, largeur);
+            }
+            else {
+                Arrays.fill(cumul, dans, dans + largeur, neutre);
+            }
+            return;
+        }
+        int avant = precedente * largeur;
+        if(!dansImage){
+            // neutre ne change pas le cumul
+            System.arraycopy(cumul, avant, cumul, dans, largeur);
+            return;
+        }
+        for(int x = 0, i = s * largeur; x < largeur; x++, i++){
+            cumul[dans + x] = extremum(maximum, cumul[avant + x], source[i]);
+        }
+    }
+}
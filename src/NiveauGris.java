@@ -1,6 +1,8 @@
 package image ;
 
 import java.awt.Color ;
+import java.util.SplittableRandom ;
+import java.util.concurrent.ThreadLocalRandom ;
 
 /** L'énumération NiveauGris représente de façon abstraite une couleur 
  * intermédiaire entre blanc et noir. Cette représentation abstraite
@@ -23,15 +25,128 @@ public enum NiveauGris {
         this.couleur = couleur ;
         this.code = code ;
     }
-    
 
-    
+    // les niveaux dans l'ordre (values() en fait une copie à chaque appel)
+    private static final NiveauGris[] VALEURS = values() ;
+
+    /** Nombre de niveaux de gris disponibles */
+    public static final int NB_NIVEAUX = VALEURS.length ;
+
+    // les opérations précalculées sur les numéros d'ordre : case [a] (ou [a][b]) =
+    // numéro d'ordre du résultat de l'opération sur le niveau a (et le niveau b)
+    private static final int[] INVERSER = new int[NB_NIVEAUX] ;
+    private static final int[] ECLAIRCIR = new int[NB_NIVEAUX] ;
+    private static final int[] ASSOMBRIR = new int[NB_NIVEAUX] ;
+    private static final int[][] AJOUTER = new int[NB_NIVEAUX][NB_NIVEAUX] ;
+    private static final int[][] SOUSTRAIRE = new int[NB_NIVEAUX][NB_NIVEAUX] ;
+    private static final int[][] XOR = new int[NB_NIVEAUX][NB_NIVEAUX] ;
+    private static final int[][] MAXIMUM = new int[NB_NIVEAUX][NB_NIVEAUX] ;
+    private static final int[][] MINIMUM = new int[NB_NIVEAUX][NB_NIVEAUX] ;
+    private static final int[][] INTERSECTION = new int[NB_NIVEAUX][NB_NIVEAUX] ;
+
+    static {
+        int noir = NB_NIVEAUX-1 ;
+        for (int a = 0 ; a < NB_NIVEAUX ; a++) {
+            INVERSER[a] = noir - a ;
+            ECLAIRCIR[a] = Math.max(a-1, 0) ;
+            ASSOMBRIR[a] = Math.min(a+1, noir) ;
+            for (int b = 0 ; b < NB_NIVEAUX ; b++) {
+                AJOUTER[a][b] = Math.min(a+b, noir) ;
+                SOUSTRAIRE[a][b] = Math.max(a-b, 0) ;
+                XOR[a][b] = (a==b ? 0 : noir) ;
+                MAXIMUM[a][b] = Math.max(a, b) ;
+                MINIMUM[a][b] = Math.min(a, b) ;
+                INTERSECTION[a][b] = (a==b ? a : 0) ;
+            }
+        }
+    }
+
+    /** Donne l'instance de niveau de gris de numéro d'ordre spécifié (compris
+     * entre 0 et NB_NIVEAUX-1), sans saturation ni copie du tableau des valeurs */
+    public static NiveauGris deOrdinal(int niv) {
+        return VALEURS[niv] ;
+    }
+
+    /** Numéro d'ordre du négatif du niveau de numéro d'ordre spécifié */
+    public static int inverserOrdinal(int niv) { return INVERSER[niv] ; }
+
+    /** Numéro d'ordre du niveau un ton plus clair (minimum : blanc) */
+    public static int eclaircirOrdinal(int niv) { return ECLAIRCIR[niv] ; }
+
+    /** Numéro d'ordre du niveau un ton plus foncé (maximum : noir) */
+    public static int assombrirOrdinal(int niv) { return ASSOMBRIR[niv] ; }
+
+    /** Numéro d'ordre de la somme de deux niveaux (maximum : noir) */
+    public static int ajouterOrdinaux(int a, int b) { return AJOUTER[a][b] ; }
+
+    /** Numéro d'ordre de la différence de deux niveaux (minimum : blanc) */
+    public static int soustraireOrdinaux(int a, int b) { return SOUSTRAIRE[a][b] ; }
+
+    /** Numéro d'ordre de BLANC si les deux niveaux sont égaux, de NOIR sinon */
+    public static int XOROrdinaux(int a, int b) { return XOR[a][b] ; }
+
+    /** Numéro d'ordre du plus sombre des deux niveaux */
+    public static int maximumOrdinaux(int a, int b) { return MAXIMUM[a][b] ; }
+
+    /** Numéro d'ordre du plus clair des deux niveaux */
+    public static int minimumOrdinaux(int a, int b) { return MINIMUM[a][b] ; }
+
+    /** Numéro d'ordre du premier niveau s'il est égal au second, de BLANC sinon */
+    public static int intersectionOrdinaux(int a, int b) { return INTERSECTION[a][b] ; }
+
+    /** Table de inverser : case i = numéro d'ordre du négatif du niveau i
+     * (une copie, que l'appelant peut conserver pour ses boucles) */
+    public static int[] tableInverser() { return INVERSER.clone() ; }
+
+    /** Table de eclaircir, indicée par numéro d'ordre (une copie) */
+    public static int[] tableEclaircir() { return ECLAIRCIR.clone() ; }
+
+    /** Table de assombrir, indicée par numéro d'ordre (une copie) */
+    public static int[] tableAssombrir() { return ASSOMBRIR.clone() ; }
+
+    /** Table de l'augmentation de contraste autour du niveau moyen spécifié : les
+     * niveaux plus foncés que lui sont assombris, les plus clairs éclaircis, et
+     * ceux qui lui sont égaux conservés (indicée par numéro d'ordre) */
+    public static int[] tableContraste(NiveauGris moyen) {
+        int[] table = new int[NB_NIVEAUX] ;
+        for (int niv = 0 ; niv < NB_NIVEAUX ; niv++)
+            table[niv] = niv > moyen.ordinal() ? ASSOMBRIR[niv]
+                : niv < moyen.ordinal() ? ECLAIRCIR[niv] : niv ;
+        return table ;
+    }
+
+    /** Table de ajouter : case [a][b] = numéro d'ordre de la somme des niveaux a et b
+     * (une copie) */
+    public static int[][] tableAjouter() { return copie(AJOUTER) ; }
+
+    /** Table de soustraire, indicée par numéros d'ordre (une copie) */
+    public static int[][] tableSoustraire() { return copie(SOUSTRAIRE) ; }
+
+    /** Table de XOR, indicée par numéros d'ordre (une copie) */
+    public static int[][] tableXOR() { return copie(XOR) ; }
+
+    /** Table de maximum, indicée par numéros d'ordre (une copie) */
+    public static int[][] tableMaximum() { return copie(MAXIMUM) ; }
+
+    /** Table de minimum, indicée par numéros d'ordre (une copie) */
+    public static int[][] tableMinimum() { return copie(MINIMUM) ; }
+
+    /** Table de intersection, indicée par numéros d'ordre (une copie) */
+    public static int[][] tableIntersection() { return copie(INTERSECTION) ; }
+
+    // copie profonde d'une table à deux entrées
+    private static int[][] copie(int[][] table) {
+        int[][] resultat = new int[table.length][] ;
+        for (int a = 0 ; a < table.length ; a++)
+            resultat[a] = table[a].clone() ;
+        return resultat ;
+    }
+
     /** Donne l'instance de niveau de gris à partir d'un numéro
      * d'ordre. Si la valeur spécifiée est trop faible ou trop forte,
      * le niveau de gris retourné "sature" à BLANC ou à NOIR. */
     public static NiveauGris deNiveau(int niv) {
-        NiveauGris[] valeurs = values() ;
-        return valeurs[Math.min(Math.max(niv, 0), valeurs.length-1)] ;
+        return VALEURS[Math.min(Math.max(niv, 0), NB_NIVEAUX-1)] ;
     }
 
     /** Donne l'instance de niveau de gris à partir d'un degré de luminosité
@@ -40,14 +155,26 @@ public enum NiveauGris {
      * à BLANC ou à NOIR. */
     public static NiveauGris deLuminosite(double luminosite) {
         double noirceur = Math.min(Math.max(1-luminosite, 0), 1) ;
-        return deNiveau((int) Math.round(noirceur * (values().length - 1))) ;
+        return deNiveau((int) Math.round(noirceur * (NB_NIVEAUX - 1))) ;
+    }
+
+    /** Donne le niveau de gris moyen d'un ensemble de points décrit par son
+     * histogramme (nombre de points de chaque niveau, indicé par numéro
+     * d'ordre). La moyenne des numéros d'ordre est arrondie par défaut. */
+    public static NiveauGris moyenne(int[] histogramme) {
+        long somme = 0, nombre = 0 ;
+        for (int niv = 0 ; niv < histogramme.length ; niv++) {
+            somme += (long) niv * histogramme[niv] ;
+            nombre += histogramme[niv] ;
+        }
+        return VALEURS[(int) (somme / nombre)] ;
     }
 
     /** Donne l'instance de niveau de gris dont le caractère spécifié
      * le représente en mode texte. Si le caractère ne correspond à
      * rien, renvoie null */
     public static NiveauGris deCaractere(char code) {
-        for(NiveauGris g: values())
+        for(NiveauGris g: VALEURS)
             if (g.code == code)
                 return g ;
         return null ;
@@ -57,23 +184,40 @@ public enum NiveauGris {
      * le représente en mode graphique. Si la couleur spécifiée ne
      * correspond à rien, renvoie null */
     public static NiveauGris deCouleur(Color couleur) {
-        for(NiveauGris g: values())
+        for(NiveauGris g: VALEURS)
             if (g.couleur.equals(couleur))
                 return g ;
         return null ;
     }
 
+    // le générateur de chaque thread évite la contention sur celui, partagé, de Math.random()
     public static NiveauGris randomize() {
-        NiveauGris[] valeurs = values() ;
-        return valeurs[((int)(Math.random()*valeurs.length))] ;
+        return VALEURS[ThreadLocalRandom.current().nextInt(NB_NIVEAUX)] ;
     }
 
     public static NiveauGris randomizeNB() {
-        if (Math.random() < 0.5)
+        if (ThreadLocalRandom.current().nextBoolean())
             return BLANC ;
         return NOIR ;
     }
 
+    /** Remplit les cases debut à debut+nombre-1 du tableau avec les numéros d'ordre
+     * (BLANC ou NOIR) des points de la ligne y d'une image tirée au hasard à partir de la
+     * graine spécifiée. Chaque ligne a son propre générateur (SplittableRandom), dont
+     * chaque long tiré donne 64 points : le résultat ne dépend que de la graine et de y, et
+     * les lignes peuvent être tirées dans n'importe quel ordre, en parallèle ou non. */
+    public static void tirerLigneNB(long graine, int y, byte[] ordinaux, int debut, int nombre) {
+        // graines des lignes : consécutives à partir d'une valeur mélangée de la graine
+        SplittableRandom hasard = new SplittableRandom(new SplittableRandom(graine).nextLong() + y) ;
+        byte noir = (byte) (NB_NIVEAUX-1) ;
+        for (int i = 0 ; i < nombre ; i += 64) {
+            long bits = hasard.nextLong() ;
+            int fin = Math.min(nombre, i+64) ;
+            for (int j = debut+i ; j < debut+fin ; j++, bits >>>= 1)
+                ordinaux[j] = (bits & 1) == 0 ? 0 : noir ;
+        }
+    }
+
     /** Retourne le caractère représentant le niveau de gris courant */
     public char code() { return this.code ; }
 
@@ -88,7 +232,7 @@ public enum NiveauGris {
 
     /** Renvoie le niveau de gris un ton plus clair que le niveau courant */
     public NiveauGris eclaircir() {
-        return deNiveau(this.ordinal()-1) ;
+        return VALEURS[ECLAIRCIR[this.ordinal()]] ;
     }
 
     // Renvoie le niveau de gris n tons plus clair que le niveau courant
@@ -98,7 +242,7 @@ public enum NiveauGris {
 
     /** Renvoie le niveau de gris un ton plus foncé que le niveau courant */
     public NiveauGris assombrir() {
-        return deNiveau(this.ordinal()+1) ;
+        return VALEURS[ASSOMBRIR[this.ordinal()]] ;
     }
 
     // Renvoie le niveau de gris n tons plus foncé que le niveau courant
@@ -108,40 +252,41 @@ public enum NiveauGris {
 
     /** Renvoie le "négatif" du niveau courant (blanc &lt;-&gt; noir) */
     public NiveauGris inverser() {
-        return deNiveau(values().length-1 - this.ordinal()) ; 
+        return VALEURS[INVERSER[this.ordinal()]] ;
     }
 
     /** Renvoie BLANC si les deux niveaux de gris sont égaux, NOIR sinon */
     public NiveauGris XOR(NiveauGris gris) {
-        return (this==gris?BLANC:NOIR) ;
+        return VALEURS[XOR[this.ordinal()][gris.ordinal()]] ;
     }
 
     /** Renvoie un niveau de gris correspondant à la somme du niveau courant et
      * du paramètre (maximum : noir) */
     public NiveauGris ajouter(NiveauGris gris) {
-        return assombrir(gris.ordinal()) ;       
+        return VALEURS[AJOUTER[this.ordinal()][gris.ordinal()]] ;
     }
 
     /** Renvoie un niveau de gris correspondant à la différence entre le niveau 
      * courant et le paramètre (minimum : blanc) */
     public NiveauGris soustraire(NiveauGris gris) {
-        return eclaircir(gris.ordinal()) ;       
+        return VALEURS[SOUSTRAIRE[this.ordinal()][gris.ordinal()]] ;
     }
 
     /** Renvoie un niveau de gris égal au plus sombre entre le niveau courant et
      * le paramètre */
     public NiveauGris maximum(NiveauGris gris) {
-        if (this.compareTo(gris) < 0)
-            return gris ;
-        return this ;
+        return VALEURS[MAXIMUM[this.ordinal()][gris.ordinal()]] ;
     }
 
     /** Renvoie un niveau de gris égal au plus clair entre le niveau courant et
      * le paramètre */
     public NiveauGris minimum(NiveauGris gris) {
-        if (this.compareTo(gris) < 0)
-            return this ;
-        return gris ;
+        return VALEURS[MINIMUM[this.ordinal()][gris.ordinal()]] ;
+    }
+
+    /** Renvoie le niveau courant s'il est égal au paramètre, BLANC sinon */
+    public NiveauGris intersection(NiveauGris gris) {
+        return VALEURS[INTERSECTION[this.ordinal()][gris.ordinal()]] ;
     }
 
     /** Représentation sous forme de chaîne (en fait le caractère codant le niveau de gris) */
@@ -0,0 +1,283 @@
+import image.ImageGrise;
+import image.NiveauGris;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Enchaînement d'opérations point par point sur une image, évalué en une seule passe.
+ * Les opérations sont seulement enregistrées ; l'image résultat est calculée ligne par
+ * ligne lors de l'appel à <code>executer</code>, directement dans le tableau d'octets
+ * du résultat, sans construire d'image intermédiaire :
+ * <pre>
+ *     ImageGrise res = Pipeline.depuis(img).ajouter(img2).inverser().augmenterContraste().executer();
+ * </pre>
+ * Les opérations successives sur un point seul (inverser, eclaircir, assombrir) sont
+ * composées en une unique table de correspondance. L'augmentation de contraste a besoin
+ * du niveau moyen de l'image qui la précède : celui-ci est obtenu à partir de
+ * l'histogramme de la source quand il n'y a que des opérations sur un point seul ; sinon
+ * les opérations qui la précèdent sont d'abord appliquées au résultat en comptant ses
+ * niveaux, et les suivantes reprennent ce résultat sans relire la source.
+ * <p>
+ * Les niveaux de gris sont calculés avec les méthodes de <code>NiveauGris</code>, comme
+ * dans toutes les implémentations de <code>ImageGrise</code> : assombrir un point noir le
+ * laisse noir, et le contraste conserve les points égaux au niveau moyen.
+ */
+public class Pipeline {
+
+    // une opération enregistrée : table sur un point seul, table sur deux points (avec
+    // l'image opérande), ou augmentation de contraste (aucune table)
+    private static final class Etape {
+        final int[] table;
+        final int[][] table2;
+        final ImageGrise operande;
+
+        Etape(int[] table, int[][] table2, ImageGrise operande) {
+            this.table = table;
+            this.table2 = table2;
+            this.operande = operande;
+        }
+
+        boolean estContraste() {
+            return table == null && table2 == null;
+        }
+    }
+
+    private final ImageGrise source;
+    private final List<Etape> etapes = new ArrayList<>();
+
+    private Pipeline(ImageGrise source) {
+        this.source = source;
+    }
+
+    /**
+     * Commence un enchaînement d'opérations à partir de l'image spécifiée. L'image n'est
+     * lue qu'à l'exécution : les modifications faites entre-temps sont prises en compte.
+     *
+     * @param source
+     */
+    public static Pipeline depuis(ImageGrise source) {
+        return new Pipeline(source);
+    }
+
+    /**
+     * Ajoute le passage au négatif
+     */
+    public Pipeline inverser() {
+        return unaire(NiveauGris.tableInverser());
+    }
+
+    /**
+     * Ajoute l'éclaircissement d'un niveau de chaque point
+     */
+    public Pipeline eclaircir() {
+        return unaire(NiveauGris.tableEclaircir());
+    }
+
+    /**
+     * Ajoute l'assombrissement d'un niveau de chaque point
+     */
+    public Pipeline assombrir() {
+        return unaire(NiveauGris.tableAssombrir());
+    }
+
+    /**
+     * Ajoute l'addition point par point avec l'image en paramètre
+     *
+     * @param img
+     */
+    public Pipeline ajouter(ImageGrise img) {
+        return binaire(img, NiveauGris.tableAjouter());
+    }
+
+    /**
+     * Ajoute la soustraction point par point de l'image en paramètre
+     *
+     * @param img
+     */
+    public Pipeline soustraire(ImageGrise img) {
+        return binaire(img, NiveauGris.tableSoustraire());
+    }
+
+    /**
+     * Ajoute le OU Exclusif point par point avec l'image en paramètre
+     *
+     * @param img
+     */
+    public Pipeline XOR(ImageGrise img) {
+        return binaire(img, NiveauGris.tableXOR());
+    }
+
+    /**
+     * Ajoute l'intersection avec l'image en paramètre (les points de niveaux différents
+     * deviennent blancs)
+     *
+     * @param img
+     */
+    public Pipeline intersection(ImageGrise img) {
+        return binaire(img, NiveauGris.tableIntersection());
+    }
+
+    /**
+     * Ajoute l'augmentation de contraste par rapport au niveau moyen de l'image obtenue
+     * jusque-là
+     */
+    public Pipeline augmenterContraste() {
+        etapes.add(new Etape(null, null, null));
+        return this;
+    }
+
+    /**
+     * Calcule le résultat dans une nouvelle <code>ImageOctets</code>, ou retourne null si
+     * une des images opérandes n'a pas la taille de la source
+     */
+    public ImageGrise executer() {
+        if(!operandesValides()){
+            return null;
+        }
+        return ImageOctets.deOrdinaux(source.largeur(), source.hauteur(), calculer());
+    }
+
+    /**
+     * Calcule le résultat dans l'image destination et la retourne, ou retourne null si
+     * elle ou une des images opérandes n'a pas la taille de la source. Le résultat est
+     * entièrement calculé avant d'être recopié ligne par ligne dans la destination, qui
+     * peut donc être la source elle-même.
+     *
+     * @param destination
+     */
+    public ImageGrise executer(ImageGrise destination) {
+        int largeur = source.largeur();
+        if(destination.largeur() != largeur || destination.hauteur() != source.hauteur()
+                || !operandesValides()){
+            return null;
+        }
+        byte[] points = calculer();
+        for(int y = 0; y < source.hauteur(); y++){
+            destination.ecrireLigne(0, y, largeur, points, y * largeur);
+        }
+        return destination;
+    }
+
+    // enregistre une opération sur un point seul, composée avec la précédente si possible
+    private Pipeline unaire(int[] table) {
+        ajouterUnaire(etapes, table);
+        return this;
+    }
+
+    // enregistre une opération entre chaque point et celui de l'image opérande
+    private Pipeline binaire(ImageGrise img, int[][] table) {
+        etapes.add(new Etape(null, table, img));
+        return this;
+    }
+
+    // ajoute une table à une liste d'étapes, en la composant avec la dernière si elle
+    // porte aussi sur un point seul
+    private static void ajouterUnaire(List<Etape> liste, int[] table) {
+        if(!liste.isEmpty() && liste.get(liste.size() - 1).table != null){
+            int[] precedente = liste.remove(liste.size() - 1).table;
+            int[] composee = new int[NiveauGris.NB_NIVEAUX];
+            for(int i = 0; i < composee.length; i++){
+                composee[i] = table[precedente[i]];
+            }
+            table = composee;
+        }
+        liste.add(new Etape(table, null, null));
+    }
+
+    // vrai si toutes les images opérandes ont la taille de la source
+    private boolean operandesValides() {
+        for(Etape etape : etapes){
+            if(etape.operande != null && (etape.operande.largeur() != source.largeur()
+                    || etape.operande.hauteur() != source.hauteur())){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // calcule les numéros d'ordre des points du résultat, une ligne après l'autre. Les
+    // étapes sont appliquées en une passe sur les lignes de la source ; une augmentation
+    // de contraste est remplacée par la table correspondant au niveau moyen de ce qui la
+    // précède, tiré de l'histogramme de la source quand elle n'est précédée que
+    // d'opérations sur un point seul. Sinon, les étapes qui la précèdent sont appliquées
+    // en comptant les niveaux obtenus, et les suivantes reprennent ce résultat au lieu
+    // de relire la source et les opérandes.
+    private byte[] calculer() {
+        byte[] points = new byte[source.largeur() * source.hauteur()];
+        byte[] tampon = new byte[source.largeur()];
+        List<Etape> passe = new ArrayList<>();
+        boolean calcule = false;
+        for(Etape etape : etapes){
+            if(etape.table != null){
+                ajouterUnaire(passe, etape.table);
+            }
+            else if(!etape.estContraste()){
+                passe.add(etape);
+            }
+            else {
+                int[] histogramme;
+                if(!calcule && passe.size() <= 1 && (passe.isEmpty() || passe.get(0).table != null)){
+                    histogramme = histogrammeSource(passe);
+                }
+                else {
+                    histogramme = new int[NiveauGris.NB_NIVEAUX];
+                    appliquer(passe, calcule, points, tampon, histogramme);
+                    calcule = true;
+                    passe.clear();
+                }
+                ajouterUnaire(passe, NiveauGris.tableContraste(NiveauGris.moyenne(histogramme)));
+            }
+        }
+        appliquer(passe, calcule, points, tampon, null);
+        return points;
+    }
+
+    // histogramme de la source transformée par la table de l'étape spécifiée (s'il y en a)
+    private int[] histogrammeSource(List<Etape> passe) {
+        int[] histogrammeSource = source.histogramme();
+        if(passe.isEmpty()){
+            return histogrammeSource;
+        }
+        int[] h = new int[NiveauGris.NB_NIVEAUX];
+        int[] table = passe.get(0).table;
+        for(int i = 0; i < histogrammeSource.length; i++){
+            h[table[i]] += histogrammeSource[i];
+        }
+        return h;
+    }
+
+    // applique les étapes aux points, ligne par ligne : chaque ligne de la source y est
+    // d'abord copiée si calcule est faux, et les lignes des opérandes sont lues d'un bloc
+    // dans tampon ; les niveaux obtenus sont comptés dans histogramme s'il n'est pas null
+    private void appliquer(List<Etape> passe, boolean calcule, byte[] points, byte[] tampon, int[] histogramme) {
+        int largeur = tampon.length;
+        for(int y = 0; y < source.hauteur(); y++){
+            int base = y * largeur;
+            int fin = base + largeur;
+            if(!calcule){
+                source.lireLigne(0, y, largeur, points, base);
+            }
+            for(Etape etape : passe){
+                if(etape.table != null){
+                    int[] table = etape.table;
+                    for(int i = base; i < fin; i++){
+                        points[i] = (byte) table[points[i]];
+                    }
+                }
+                else {
+                    int[][] table = etape.table2;
+                    etape.operande.lireLigne(0, y, largeur, tampon, 0);
+                    for(int i = base; i < fin; i++){
+                        points[i] = (byte) table[points[i]][tampon[i - base]];
+                    }
+                }
+            }
+            if(histogramme != null){
+                for(int i = base; i < fin; i++){
+                    histogramme[points[i]]++;
+                }
+            }
+        }
+    }
+}
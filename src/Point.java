@@ -37,4 +37,9 @@ public class Point implements Couple<Integer,Integer> {
         Point p = (Point) o ;
         return (x == p.getX()) && (y == p.getY()) ;
     }
+
+    // même valeur que le hashCode d'un CoupleObj<Integer,Integer> (x, y)
+    public int hashCode() {
+        return Integer.rotateLeft(x, 16) ^ y ;
+    }
 }
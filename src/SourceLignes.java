@@ -0,0 +1,50 @@
+import image.ImageGrise;
+import image.NiveauGris;
+
+import java.io.IOException;
+
+/**
+ * Source d'image lue ligne par ligne, de haut en bas, sans que l'image entière ne soit
+ * en mémoire : chaque ligne est fournie sous forme de numéros d'ordre
+ * (<code>ordinal()</code>) des niveaux de gris de ses points.
+ */
+public interface SourceLignes {
+
+    /**
+     * Retourne la largeur de l'image (nombre de points de chaque ligne)
+     */
+    int largeur();
+
+    /**
+     * Retourne la hauteur de l'image (nombre de lignes)
+     */
+    int hauteur();
+
+    /**
+     * Range les numéros d'ordre des points de la ligne suivante dans les
+     * <code>largeur()</code> premières cases du tableau, et retourne false s'il n'y a
+     * plus de ligne à lire
+     *
+     * @param niveaux
+     */
+    boolean lireLigne(byte[] niveaux) throws IOException;
+
+    /**
+     * Recopie les lignes restantes dans une image blanche de même taille (seuls les points
+     * non blancs sont fixés) et la retourne
+     *
+     * @param image
+     */
+    default <I extends ImageGrise> I copierDans(I image) throws IOException {
+        byte[] niveaux = new byte[largeur()];
+        int blanc = NiveauGris.BLANC.ordinal();
+        for(int y = 0; y < hauteur() && lireLigne(niveaux); y++){
+            for(int x = 0; x < niveaux.length; x++){
+                if(niveaux[x] != blanc){
+                    image.definirPoint(x, y, NiveauGris.deOrdinal(niveaux[x]));
+                }
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,142 @@
+import image.ImageGrise;
+import image.NiveauGris;
+
+import java.awt.Rectangle;
+
+/**
+ * Statistiques d'une image en niveaux de gris (histogramme, niveau moyen, rectangle
+ * englobant ses points non blancs), calculées à la première demande puis conservées tant
+ * que l'image n'est pas modifiée : le numéro de version de l'image
+ * (<code>ImageGrise.version()</code>) est relu à chaque demande, et les résultats ne sont
+ * recalculés que s'il a changé. Une image qui ne suit pas ses modifications (version -1,
+ * comme <code>ImageMappee</code>) est recalculée à chaque demande.
+ */
+public class Statistiques {
+
+    private final ImageGrise image;
+    // version de l'image pour laquelle les résultats conservés ont été calculés
+    private long version = -1;
+    private int[] histogramme;
+    private NiveauGris niveauMoyen;
+    private Rectangle cadre;
+    // vrai si le cadre a été calculé (il vaut null pour une image toute blanche)
+    private boolean cadreCalcule;
+
+    /**
+     * Construit les statistiques de l'image spécifiée
+     *
+     * @param image
+     */
+    public Statistiques(ImageGrise image) {
+        this.image = image;
+    }
+
+    /**
+     * Retourne l'image décrite
+     */
+    public ImageGrise image() {
+        return image;
+    }
+
+    /**
+     * Retourne le nombre de points de chaque niveau de gris, indicé par numéro d'ordre
+     */
+    public int[] histogramme() {
+        return histogrammeConserve().clone();
+    }
+
+    /**
+     * Compte le nombre de points de l’image dont le niveau de gris est égal au niveau spécifié
+     *
+     * @param gris
+     */
+    public int compterPoints(NiveauGris gris) {
+        return histogrammeConserve()[gris.ordinal()];
+    }
+
+    /**
+     * Retourne le niveau de gris moyen de l’image
+     */
+    public NiveauGris niveauMoyen() {
+        if(niveauMoyen == null){
+            niveauMoyen = NiveauGris.moyenne(histogrammeConserve());
+        }
+        return niveauMoyen;
+    }
+
+    /**
+     * Retourne le plus petit rectangle qui contient tous les points non blancs de l'image,
+     * ou null si l'image est toute blanche
+     */
+    public Rectangle cadre() {
+        valider();
+        if(!cadreCalcule){
+            cadre = calculerCadre();
+            cadreCalcule = true;
+        }
+        return cadre == null ? null : new Rectangle(cadre);
+    }
+
+    // oublie les résultats conservés si l'image a changé depuis leur calcul
+    private void valider() {
+        long courante = image.version();
+        if(courante < 0 || courante != version){
+            histogramme = null;
+            niveauMoyen = null;
+            cadre = null;
+            cadreCalcule = false;
+            version = courante;
+        }
+    }
+
+    private int[] histogrammeConserve() {
+        valider();
+        if(histogramme == null){
+            histogramme = image.histogramme();
+        }
+        return histogramme;
+    }
+
+    // parcourt les lignes du haut puis du bas jusqu'au premier point non blanc, puis ne
+    // cherche les colonnes extrêmes que dans les lignes restantes
+    private Rectangle calculerCadre() {
+        int largeur = image.largeur();
+        int hauteur = image.hauteur();
+        int haut = 0;
+        while(haut < hauteur && ligneBlanche(haut, largeur)){
+            haut++;
+        }
+        if(haut == hauteur){
+            return null;
+        }
+        int bas = hauteur - 1;
+        while(ligneBlanche(bas, largeur)){
+            bas--;
+        }
+        int gauche = largeur, droite = -1;
+        for(int y = haut; y <= bas; y++){
+            for(int x = 0; x < gauche; x++){
+                if(image.pointEn(x, y) != NiveauGris.BLANC){
+                    gauche = x;
+                    break;
+                }
+            }
+            for(int x = largeur - 1; x > droite; x--){
+                if(image.pointEn(x, y) != NiveauGris.BLANC){
+                    droite = x;
+                    break;
+                }
+            }
+        }
+        return new Rectangle(gauche, haut, droite - gauche + 1, bas - haut + 1);
+    }
+
+    private boolean ligneBlanche(int y, int largeur) {
+        for(int x = 0; x < largeur; x++){
+            if(image.pointEn(x, y) != NiveauGris.BLANC){
+                return false;
+            }
+        }
+        return true;
+    }
+}
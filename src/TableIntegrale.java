@@ -0,0 +1,178 @@
+import image.ImageGrise;
+import image.NiveauGris;
+
+import java.util.Arrays;
+
+/**
+ * Table des sommes cumulées (image intégrale) d'une image en niveaux de gris : pour chaque
+ * niveau non blanc, la case (x, y) contient le nombre de points de ce niveau dans le
+ * rectangle [0, x[ x [0, y[. Une fois la table construite (en un parcours de l'image), le
+ * nombre de points de chaque niveau, la somme des niveaux et le niveau moyen de n'importe
+ * quel rectangle s'obtiennent en temps constant, par quatre lectures par niveau.
+ * <p>
+ * Les rectangles sont donnés par leurs bornes [x0, x1[ x [y0, y1[, limitées à l'image.
+ * La table ne suit pas les modifications de l'image : après avoir modifié des lignes, il
+ * faut appeler <code>mettreAJour</code> avec la première ligne modifiée.
+ */
+public class TableIntegrale {
+
+    private static final int BLANC = NiveauGris.BLANC.ordinal();
+
+    private final ImageGrise image;
+    private final int largeur;
+    private final int hauteur;
+    // comptes[niveau - 1][y * (largeur + 1) + x] pour les niveaux non blancs (les points
+    // blancs sont ceux qui restent)
+    private final int[][] comptes;
+
+    /**
+     * Construit la table de l'image spécifiée
+     *
+     * @param image
+     */
+    public TableIntegrale(ImageGrise image) {
+        this.image = image;
+        this.largeur = image.largeur();
+        this.hauteur = image.hauteur();
+        this.comptes = new int[NiveauGris.NB_NIVEAUX - 1][(largeur + 1) * (hauteur + 1)];
+        mettreAJour(0);
+    }
+
+    /**
+     * Recalcule la table à partir de la ligne y0 de l'image (les lignes au-dessus n'ont
+     * pas changé ; toutes les cases en dessous dépendent des lignes modifiées)
+     *
+     * @param y0
+     */
+    public void mettreAJour(int y0) {
+        int pas = largeur + 1;
+        int[] ligne = new int[NiveauGris.NB_NIVEAUX];
+        byte[] points = new byte[largeur];
+        for(int y = Math.max(y0, 0); y < hauteur; y++){
+            Arrays.fill(ligne, 0);
+            image.lireLigne(0, y, largeur, points, 0);
+            int dessus = y * pas;
+            int courant = dessus + pas;
+            for(int x = 0; x < largeur; x++){
+                ligne[points[x]]++;
+                for(int n = 1; n < NiveauGris.NB_NIVEAUX; n++){
+                    comptes[n - 1][courant + x + 1] = comptes[n - 1][dessus + x + 1] + ligne[n];
+                }
+            }
+        }
+    }
+
+    /**
+     * Retourne la largeur de l'image indexée
+     */
+    public int largeur() {
+        return largeur;
+    }
+
+    /**
+     * Retourne la hauteur de l'image indexée
+     */
+    public int hauteur() {
+        return hauteur;
+    }
+
+    /**
+     * Nombre de points du niveau spécifié dans le rectangle [x0, x1[ x [y0, y1[
+     *
+     * @param gris
+     * @param x0
+     * @param y0
+     * @param x1
+     * @param y1
+     */
+    public int compter(NiveauGris gris, int x0, int y0, int x1, int y1) {
+        x0 = borner(x0, largeur);
+        x1 = borner(x1, largeur);
+        y0 = borner(y0, hauteur);
+        y1 = borner(y1, hauteur);
+        if(x1 <= x0 || y1 <= y0){
+            return 0;
+        }
+        if(gris.ordinal() == BLANC){
+            int autres = 0;
+            for(int n = 1; n < NiveauGris.NB_NIVEAUX; n++){
+                autres += somme(comptes[n - 1], x0, y0, x1, y1);
+            }
+            return (x1 - x0) * (y1 - y0) - autres;
+        }
+        return somme(comptes[gris.ordinal() - 1], x0, y0, x1, y1);
+    }
+
+    /**
+     * Nombre de points de chaque niveau de gris dans le rectangle [x0, x1[ x [y0, y1[,
+     * indicé par numéro d'ordre
+     *
+     * @param x0
+     * @param y0
+     * @param x1
+     * @param y1
+     */
+    public int[] histogramme(int x0, int y0, int x1, int y1) {
+        int[] h = new int[NiveauGris.NB_NIVEAUX];
+        x0 = borner(x0, largeur);
+        x1 = borner(x1, largeur);
+        y0 = borner(y0, hauteur);
+        y1 = borner(y1, hauteur);
+        if(x1 <= x0 || y1 <= y0){
+            return h;
+        }
+        int autres = 0;
+        for(int n = 1; n < NiveauGris.NB_NIVEAUX; n++){
+            h[n] = somme(comptes[n - 1], x0, y0, x1, y1);
+            autres += h[n];
+        }
+        h[BLANC] = (x1 - x0) * (y1 - y0) - autres;
+        return h;
+    }
+
+    /**
+     * Somme des numéros d'ordre des niveaux des points du rectangle [x0, x1[ x [y0, y1[
+     *
+     * @param x0
+     * @param y0
+     * @param x1
+     * @param y1
+     */
+    public long sommeNiveaux(int x0, int y0, int x1, int y1) {
+        int[] h = histogramme(x0, y0, x1, y1);
+        long somme = 0;
+        for(int n = 1; n < h.length; n++){
+            somme += (long) n * h[n];
+        }
+        return somme;
+    }
+
+    /**
+     * Niveau de gris moyen du rectangle [x0, x1[ x [y0, y1[ (arrondi par défaut, comme
+     * <code>niveauMoyen</code>), ou null si le rectangle ne contient aucun point de l'image
+     *
+     * @param x0
+     * @param y0
+     * @param x1
+     * @param y1
+     */
+    public NiveauGris niveauMoyen(int x0, int y0, int x1, int y1) {
+        int[] h = histogramme(x0, y0, x1, y1);
+        for(int nombre : h){
+            if(nombre > 0){
+                return NiveauGris.moyenne(h);
+            }
+        }
+        return null;
+    }
+
+    // somme de la table sur le rectangle (bornes déjà limitées à l'image)
+    private int somme(int[] table, int x0, int y0, int x1, int y1) {
+        int pas = largeur + 1;
+        return table[y1 * pas + x1] - table[y0 * pas + x1] - table[y1 * pas + x0] + table[y0 * pas + x0];
+    }
+
+    private static int borner(int valeur, int maximum) {
+        return Math.min(Math.max(valeur, 0), maximum);
+    }
+}
@@ -0,0 +1,268 @@
+import image.NiveauGris;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Traitements d'images lues et écrites ligne par ligne (<code>SourceLignes</code> et
+ * <code>DestinationLignes</code>, par exemple des fichiers au format texte ou binaire),
+ * sans jamais charger l'image entière : la mémoire utilisée ne dépend que de la largeur
+ * de l'image (et du rayon du voisinage), pas de sa hauteur. On peut ainsi traiter des
+ * images bien plus grandes que la mémoire disponible :
+ * <pre>
+ *     try(FormatBinaire.Lecteur a = FormatBinaire.ouvrir(cheminA);
+ *         FormatBinaire.Lecteur b = FormatBinaire.ouvrir(cheminB);
+ *         FileChannel sortie = FileChannel.open(cheminC, CREATE, WRITE, TRUNCATE_EXISTING)){
+ *         TraitementFlux.combiner(a, b, NiveauGris.tableAjouter(),
+ *                 FormatBinaire.ecrivain(sortie, a.largeur(), a.hauteur()));
+ *     }
+ * </pre>
+ * Les opérations point par point sont décrites par les tables de <code>NiveauGris</code>.
+ * L'augmentation de contraste demande deux lectures de la source : une pour
+ * l'histogramme (<code>histogramme</code>), puis une pour appliquer
+ * <code>NiveauGris.tableContraste</code>.
+ */
+public class TraitementFlux {
+
+    /**
+     * Calcul d'une ligne du résultat à partir des lignes voisines de la source
+     */
+    public interface Filtre {
+
+        /**
+         * Nombre de lignes (et de colonnes) de chaque côté du point prises en compte
+         */
+        int rayon();
+
+        /**
+         * Calcule la ligne du résultat. La fenêtre contient <code>2 * rayon() + 1</code>
+         * lignes de la source : la ligne de même ordonnée est <code>fenetre[rayon()]</code>,
+         * celles du dessus la précèdent et celles du dessous la suivent ; les lignes hors de
+         * l'image valent null.
+         *
+         * @param fenetre
+         * @param largeur
+         * @param resultat
+         */
+        void calculer(byte[][] fenetre, int largeur, byte[] resultat);
+    }
+
+    private TraitementFlux() {
+    }
+
+    /**
+     * Écrit dans la destination la source dont chaque point est transformé par la table
+     * (indicée par numéro d'ordre, comme <code>NiveauGris.tableInverser()</code>)
+     *
+     * @param source
+     * @param table
+     * @param destination
+     */
+    public static void transformer(SourceLignes source, int[] table, DestinationLignes destination) throws IOException {
+        byte[] ligne = new byte[source.largeur()];
+        for(int y = 0; y < source.hauteur() && source.lireLigne(ligne); y++){
+            for(int x = 0; x < ligne.length; x++){
+                ligne[x] = (byte) table[ligne[x]];
+            }
+            destination.ecrireLigne(ligne);
+        }
+        destination.terminer();
+    }
+
+    /**
+     * Écrit dans la destination la combinaison point par point des deux sources par la
+     * table (indicée par numéros d'ordre, comme <code>NiveauGris.tableAjouter()</code>).
+     * Retourne false, sans rien écrire, si les sources ne sont pas de même taille.
+     *
+     * @param source
+     * @param autre
+     * @param table
+     * @param destination
+     */
+    public static boolean combiner(SourceLignes source, SourceLignes autre, int[][] table,
+                                   DestinationLignes destination) throws IOException {
+        if(source.largeur() != autre.largeur() || source.hauteur() != autre.hauteur()){
+            return false;
+        }
+        byte[] ligne = new byte[source.largeur()];
+        byte[] ligneAutre = new byte[autre.largeur()];
+        for(int y = 0; y < source.hauteur() && source.lireLigne(ligne) && autre.lireLigne(ligneAutre); y++){
+            for(int x = 0; x < ligne.length; x++){
+                ligne[x] = (byte) table[ligne[x]][ligneAutre[x]];
+            }
+            destination.ecrireLigne(ligne);
+        }
+        destination.terminer();
+        return true;
+    }
+
+    /**
+     * Lit toute la source et retourne le nombre de points de chaque niveau de gris
+     *
+     * @param source
+     */
+    public static int[] histogramme(SourceLignes source) throws IOException {
+        int[] h = new int[NiveauGris.NB_NIVEAUX];
+        byte[] ligne = new byte[source.largeur()];
+        for(int y = 0; y < source.hauteur() && source.lireLigne(ligne); y++){
+            for(int x = 0; x < ligne.length; x++){
+                h[ligne[x]]++;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Écrit dans la destination le résultat du filtre appliqué à chaque ligne de la
+     * source. Seules les <code>2 * rayon + 1</code> lignes de la fenêtre sont gardées en
+     * mémoire, dans un tableau circulaire.
+     *
+     * @param source
+     * @param filtre
+     * @param destination
+     */
+    public static void filtrer(SourceLignes source, Filtre filtre, DestinationLignes destination) throws IOException {
+        int largeur = source.largeur();
+        int hauteur = source.hauteur();
+        int rayon = filtre.rayon();
+        int taille = 2 * rayon + 1;
+        byte[][] anneau = new byte[Math.min(taille, Math.max(hauteur, 1))][largeur];
+        byte[][] fenetre = new byte[taille][];
+        byte[] resultat = new byte[largeur];
+        int lues = 0;
+        for(int y = 0; y < hauteur; y++){
+            // la ligne y + rayon prend la place de la ligne y - rayon - 1, devenue inutile
+            while(lues < hauteur && lues <= y + rayon){
+                if(!source.lireLigne(anneau[lues % anneau.length])){
+                    throw new IOException("source interrompue à la ligne " + lues);
+                }
+                lues++;
+            }
+            for(int k = 0; k < taille; k++){
+                int ligne = y - rayon + k;
+                fenetre[k] = ligne >= 0 && ligne < hauteur ? anneau[ligne % anneau.length] : null;
+            }
+            filtre.calculer(fenetre, largeur, resultat);
+            destination.ecrireLigne(resultat);
+        }
+        destination.terminer();
+    }
+
+    /**
+     * Filtre donnant à chaque point le niveau le plus foncé du carré de côté
+     * <code>2 * rayon + 1</code> qui l'entoure (limité à l'image)
+     *
+     * @param rayon
+     */
+    public static Filtre maximum(int rayon) {
+        return new FiltreExtremum(rayon, NiveauGris.tableMaximum());
+    }
+
+    /**
+     * Filtre donnant à chaque point le niveau le plus clair du carré de côté
+     * <code>2 * rayon + 1</code> qui l'entoure (limité à l'image)
+     *
+     * @param rayon
+     */
+    public static Filtre minimum(int rayon) {
+        return new FiltreExtremum(rayon, NiveauGris.tableMinimum());
+    }
+
+    /**
+     * Filtre donnant à chaque point le niveau moyen (arrondi par défaut, comme
+     * <code>niveauMoyen</code>) du carré de côté <code>2 * rayon + 1</code> qui l'entoure
+     * (limité à l'image)
+     *
+     * @param rayon
+     */
+    public static Filtre moyenne(int rayon) {
+        return new FiltreMoyenne(rayon);
+    }
+
+    // maximum ou minimum sur le carré : d'abord sur chaque colonne de la fenêtre, puis
+    // horizontalement sur les colonnes voisines
+    private static class FiltreExtremum implements Filtre {
+
+        private final int rayon;
+        private final int[][] table;
+        private byte[] colonnes = new byte[0];
+
+        FiltreExtremum(int rayon, int[][] table) {
+            this.rayon = rayon;
+            this.table = table;
+        }
+
+        @Override
+        public int rayon() {
+            return rayon;
+        }
+
+        @Override
+        public void calculer(byte[][] fenetre, int largeur, byte[] resultat) {
+            if(colonnes.length < largeur){
+                colonnes = new byte[largeur];
+            }
+            System.arraycopy(fenetre[rayon], 0, colonnes, 0, largeur);
+            for(byte[] ligne : fenetre){
+                if(ligne != null){
+                    for(int x = 0; x < largeur; x++){
+                        colonnes[x] = (byte) table[colonnes[x]][ligne[x]];
+                    }
+                }
+            }
+            for(int x = 0; x < largeur; x++){
+                int niveau = colonnes[x];
+                int fin = Math.min(largeur - 1, x + rayon);
+                for(int i = Math.max(0, x - rayon); i <= fin; i++){
+                    niveau = table[niveau][colonnes[i]];
+                }
+                resultat[x] = (byte) niveau;
+            }
+        }
+    }
+
+    // moyenne sur le carré : sommes par colonne, puis somme glissante horizontale
+    private static class FiltreMoyenne implements Filtre {
+
+        private final int rayon;
+        private int[] sommes = new int[0];
+
+        FiltreMoyenne(int rayon) {
+            this.rayon = rayon;
+        }
+
+        @Override
+        public int rayon() {
+            return rayon;
+        }
+
+        @Override
+        public void calculer(byte[][] fenetre, int largeur, byte[] resultat) {
+            if(sommes.length < largeur){
+                sommes = new int[largeur];
+            }
+            Arrays.fill(sommes, 0, largeur, 0);
+            int nbLignes = 0;
+            for(byte[] ligne : fenetre){
+                if(ligne != null){
+                    nbLignes++;
+                    for(int x = 0; x < largeur; x++){
+                        sommes[x] += ligne[x];
+                    }
+                }
+            }
+            long somme = 0;
+            int debut = 0, fin = 0;
+            for(int x = 0; x < largeur; x++){
+                // la fenêtre horizontale est [x - rayon, x + rayon] limitée à l'image
+                while(fin < largeur && fin <= x + rayon){
+                    somme += sommes[fin++];
+                }
+                while(debut < x - rayon){
+                    somme -= sommes[debut++];
+                }
+                resultat[x] = (byte) (somme / ((long) (fin - debut) * nbLignes));
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Exécute un traitement découpé en bandes sur le <code>ForkJoinPool</code> commun. Une
+ * bande est un intervalle de lignes de l'image rangées de façon contiguë en mémoire (des
+ * lignes pour <code>ImageOctets</code>, des colonnes pour <code>ImageTab</code>).
+ * Les bandes sont coupées en deux récursivement tant qu'elles contiennent plus de
+ * <code>SEUIL</code> points ; en dessous (ou si le mode parallèle n'est pas demandé), le
+ * traitement est exécuté directement dans le thread appelant. Chaque bande doit écrire
+ * dans des lignes qui lui sont propres : le résultat est alors identique quel que soit
+ * le découpage.
+ */
+class TraitementParBandes extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Nombre de points en dessous duquel une bande n'est plus découpée */
+    static final int SEUIL = 1 << 16;
+
+    /** Traitement des lignes <code>debut</code> (incluse) à <code>fin</code> (exclue) */
+    interface Bande {
+        void traiter(int debut, int fin);
+    }
+
+    private final Bande bande;
+    private final int debut;
+    private final int fin;
+    private final int pointsParLigne;
+
+    private TraitementParBandes(Bande bande, int debut, int fin, int pointsParLigne) {
+        this.bande = bande;
+        this.debut = debut;
+        this.fin = fin;
+        this.pointsParLigne = pointsParLigne;
+    }
+
+    /**
+     * Traite les lignes 0 à <code>nbLignes</code> (exclue), en parallèle si demandé et si
+     * l'image est assez grande
+     *
+     * @param nbLignes
+     * @param pointsParLigne
+     * @param parallele
+     * @param bande
+     */
+    static void executer(int nbLignes, int pointsParLigne, boolean parallele, Bande bande) {
+        if(!parallele || (long) nbLignes * pointsParLigne <= SEUIL){
+            bande.traiter(0, nbLignes);
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new TraitementParBandes(bande, 0, nbLignes, pointsParLigne));
+    }
+
+    @Override
+    protected void compute() {
+        if(fin - debut <= 1 || (long) (fin - debut) * pointsParLigne <= SEUIL){
+            bande.traiter(debut, fin);
+            return;
+        }
+        int milieu = (debut + fin) >>> 1;
+        invokeAll(new TraitementParBandes(bande, debut, milieu, pointsParLigne),
+                new TraitementParBandes(bande, milieu, fin, pointsParLigne));
+    }
+}
@@ -7,4 +7,5 @@ public interface Couple<X,Y> {
     void defPremier(X x) ;       
     void defSecond(Y y) ;
     boolean equals(Object o) ;
+    int hashCode() ;
 }
@@ -18,6 +18,9 @@ public class CoupleObj<K,V> implements Couple<K,V> {
         return ((clef.equals(((Couple) o).premier()))
                 && (valeur.equals(((Couple) o).second()))) ;
     }
+    public int hashCode() {
+        return Integer.rotateLeft(java.util.Objects.hashCode(clef), 16) ^ java.util.Objects.hashCode(valeur) ;
+    }
     public String toString() {
         return clef + " -> " + valeur ;
     }
@@ -0,0 +1,205 @@
+package dictionnaire.correction;
+import java.util.Iterator ;
+
+/** Cette classe réalise un dictionnaire au moyen d'une table de
+ * hachage à adressage ouvert (sondage linéaire). Chaque association
+ * est rangée dans la case désignée par le <code>hashCode</code> de sa
+ * clef ; en cas de collision on essaie la case suivante. Ainsi :
+ * <UL><LI>la recherche, l'ajout et la suppression se font en temps
+ * constant en moyenne (au lieu d'un parcours de tout le tableau dans
+ * <code>TabDict</code>)</LI> <LI>lorsqu'on retire un élément, on le
+ * remplace par un marqueur <code>SUPPRIME</code> pour ne pas couper
+ * les séquences de sondage</LI> <LI>la table est redimensionnée dès
+ * qu'elle est remplie aux trois quarts (marqueurs compris)</LI></UL>
+ * Les clefs doivent donc fournir un <code>hashCode</code> cohérent avec
+ * leur méthode <code>equals</code>. */
+
+public class HashDict<K,V> implements Dictionnaire<K,V>, Iterable<K>
+{
+    private static final int INIT_SIZE = 128 ;       // taille initiale (puissance de 2)
+    // marqueur des cases libérées par une suppression
+    private static final Couple<?,?> SUPPRIME = new CoupleObj<Object,Object>(null, null) ;
+    private Couple<K,V> [] associations ; // table contenant les associations
+    private int nbAssoc ;	// nombre d'associations effectivement présentes
+    private int nbSupprimes ;	// nombre de cases contenant le marqueur SUPPRIME
+    private int decalage ;	// 32 - log2(associations.length)
+
+    /** Crée une instance de dictionnaire vide */
+    public HashDict() {
+        this(INIT_SIZE) ;
+    }
+
+    /** Crée une instance de dictionnaire vide, dimensionnée pour recevoir
+     * <code>capacite</code> associations sans redimensionnement */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public HashDict(int capacite) {
+        int taille = INIT_SIZE ;
+        while (taille - taille/4 <= capacite)
+            taille *= 2 ;
+        nbAssoc = 0 ;
+        nbSupprimes = 0 ;
+        associations = (Couple<K,V>[]) new Couple[taille] ;
+        decalage = Integer.numberOfLeadingZeros(taille) + 1 ;
+    }
+
+    /** Chaîne de caractères représentant le dictionnaire */
+    public String toString() {
+        StringBuilder s = new StringBuilder() ;
+        for (Couple<K,V> assoc : associations)
+            if (assoc != null && assoc != SUPPRIME)
+                s.append(assoc).append('\n') ;
+        return s.toString() ;
+    }
+
+    // indice de départ du sondage pour la clef c : hachage de Fibonacci,
+    // on garde les bits de poids fort du produit par le nombre d'or, ce
+    // qui répartit bien des clefs proches (coordonnées voisines)
+    private int indiceInitial(Object c) {
+        return (c.hashCode() * 0x9E3779B9) >>> decalage ;
+    }
+
+    // indice de l'association de clef c ; -1 si elle est absente
+    private int indexOfClef(K c) {
+        int masque = associations.length - 1 ;
+        for (int i = indiceInitial(c) ; associations[i] != null ; i = (i+1) & masque)
+            if (associations[i] != SUPPRIME && associations[i].premier().equals(c))
+                return i ;
+        return -1 ;
+    }
+
+    // reconstruit la table (en doublant sa taille si elle est
+    // réellement pleine, sinon simplement pour éliminer les marqueurs)
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void rehash() {
+        Couple<K,V> [] anciennes = associations ;
+        int taille = anciennes.length ;
+        if (nbAssoc >= taille/2)
+            taille *= 2 ;
+        associations = (Couple<K,V>[]) new Couple[taille] ;
+        decalage = Integer.numberOfLeadingZeros(taille) + 1 ;
+        nbSupprimes = 0 ;
+        int masque = taille - 1 ;
+        for (Couple<K,V> assoc : anciennes)
+            if (assoc != null && assoc != SUPPRIME) {
+                int i = indiceInitial(assoc.premier()) ;
+                while (associations[i] != null)
+                    i = (i+1) & masque ;
+                associations[i] = assoc ;
+            }
+    }
+
+    // range l'association (remplacement si la clef est présente)
+    private void put(Couple<K,V> assoc) {
+        int masque = associations.length - 1 ;
+        int libre = -1 ;
+        int i = indiceInitial(assoc.premier()) ;
+        while (associations[i] != null) {
+            if (associations[i] == SUPPRIME) {
+                if (libre < 0) libre = i ;
+            }
+            else if (associations[i].premier().equals(assoc.premier())) {
+                associations[i] = assoc ;
+                return ;
+            }
+            i = (i+1) & masque ;
+        }
+        if (libre >= 0) {
+            associations[libre] = assoc ;
+            nbSupprimes-- ;
+        }
+        else
+            associations[i] = assoc ;
+        nbAssoc++ ;
+        if (4 * (nbAssoc + nbSupprimes) > 3 * associations.length)
+            rehash() ;
+    }
+
+    // enlève l'association à l'indice spécifié
+    @SuppressWarnings("unchecked")
+    void remove(int index) {
+        associations[index] = (Couple<K,V>) SUPPRIME ;
+        nbAssoc-- ;
+        nbSupprimes++ ;
+    }
+
+    // méthodes nécessaires pour l'itérateur
+    int capacite() { return associations.length ; }
+
+    K clefPourIndex(int i) {
+        if (associations[i] == null || associations[i] == SUPPRIME)
+            return null ;
+        return associations[i].premier() ;
+    }
+
+    // IMPLÉMENTATION DE L'INTERFACE Dictionnaire
+
+    /** Teste si le dictionnaire ne contient aucune association */
+    public boolean estVide() { return (nbAssoc == 0) ; }
+
+    /** Teste si le dictionnaire contient l'association assoc */
+    public boolean contient(Couple<K,V> assoc) {
+        int i = indexOfClef(assoc.premier()) ;
+        return (i >= 0) && associations[i].equals(assoc) ;
+    }
+
+    /** Teste si le dictionnaire possède une association de clef c */
+    public boolean contientClef(K c) {
+        return indexOfClef(c) >= 0 ;
+    }
+
+    /** Teste si le dictionnaire possède une association de valeur v */
+    public boolean contientValeur(V v) {
+        for (Couple<K,V> assoc : associations)
+            if (assoc != null && assoc != SUPPRIME && assoc.second().equals(v))
+                return true ;
+        return false ;
+    }
+
+    /** Retourne le nombre d'associations du dictionnaire */
+    public int nbElements() { return nbAssoc ; }
+
+    /** Retourne l'association correspondant à la clef spécifiée */
+    public Couple<K,V> assocPour(K c) {
+        int i = indexOfClef(c) ;
+        return (i >= 0) ? associations[i] : null ;
+    }
+
+    /** Retourne la valeur associee à la clef c */
+    public V valeurPour(K c) {
+        int i = indexOfClef(c) ;
+        return (i >= 0) ? associations[i].second() : null ;
+    }
+
+    /** Ajoute une association au dictionnaire */
+    public void ajouter(Couple<K,V> assoc) {
+        put(assoc) ;
+    }
+
+    /** Définit la valeur associée à la clef c */
+    public void ajouter(K c, V v) {
+        put(new CoupleObj<K,V>(c, v)) ;
+    }
+
+    /** Enlève une association du dictionnaire */
+    public void enlever(Couple<K,V> assoc)
+    {
+        int i = indexOfClef(assoc.premier()) ;
+        if (i >= 0 && associations[i].equals(assoc))
+            remove(i) ;
+    }
+
+    /** Enlève l'association de clef c */
+    public void enleverPour(K c)
+    {
+        int i = indexOfClef(c) ;
+        if (i >= 0)
+            remove(i) ;
+    }
+
+    // IMPLÉMENTATION DE L'INTERFACE Iterable
+
+    /** Itérateur permettant de parcourir les clefs (et d'en supprimer) */
+    public Iterator<K> iterator() {
+        return new HashDictIterator<K>(this) ;
+    }
+}
@@ -0,0 +1,266 @@
+package dictionnaire.correction;
+import java.util.Iterator ;
+import java.util.concurrent.atomic.AtomicReferenceArray ;
+
+/** Cette classe réalise un dictionnaire que plusieurs threads peuvent lire et
+ * modifier en même temps. Les associations sont réparties entre plusieurs
+ * <B>segments</B> selon le hachage de leur clef ; chaque segment est une table
+ * de hachage à chaînage dont les listes ne sont jamais modifiées sur place
+ * (seule la valeur d'un maillon peut changer). Ainsi : <UL><LI>les lectures
+ * (<code>valeurPour</code>, <code>contientClef</code>...) ne prennent aucun
+ * verrou : elles voient chaque association soit avant soit après une
+ * modification concurrente</LI> <LI>les modifications ne verrouillent que le
+ * segment de la clef : des threads qui écrivent dans des segments différents
+ * ne s'attendent pas</LI> <LI>un segment est redimensionné, sous son verrou,
+ * dès qu'il est rempli aux trois quarts ; la nouvelle table n'est publiée que
+ * complète, les lectures en cours continuent sur l'ancienne</LI>
+ * <LI>l'itérateur est faiblement cohérent : il ne lève jamais d'exception, et
+ * voit chaque association présente du début à la fin du parcours (les
+ * associations ajoutées ou enlevées pendant le parcours peuvent être vues ou
+ * non)</LI></UL>
+ * <code>assocPour</code> retourne une copie de l'association : la modifier ne
+ * modifie pas le dictionnaire. Les clefs et les valeurs ne peuvent pas être
+ * null. */
+
+public class HashDictConcurrent<K,V> implements Dictionnaire<K,V>, Iterable<K>
+{
+    private static final int NB_SEGMENTS = 16 ;     // nombre de segments par défaut
+    private static final int INIT_SIZE = 16 ;       // taille initiale d'un segment (puissance de 2)
+
+    // maillon d'une liste : seule la valeur peut changer après la création
+    static final class Noeud<K,V> {
+        final K clef ;
+        final int hachage ;
+        volatile V valeur ;
+        final Noeud<K,V> suivant ;
+
+        Noeud(K clef, int hachage, V valeur, Noeud<K,V> suivant) {
+            this.clef = clef ;
+            this.hachage = hachage ;
+            this.valeur = valeur ;
+            this.suivant = suivant ;
+        }
+    }
+
+    // un segment : sa table n'est remplacée et ses listes ne sont modifiées
+    // que sous le verrou du segment
+    private static final class Segment<K,V> {
+        volatile AtomicReferenceArray<Noeud<K,V>> table ;
+        volatile int nbAssoc ;
+
+        Segment(int taille) {
+            table = new AtomicReferenceArray<Noeud<K,V>>(taille) ;
+        }
+    }
+
+    private final Segment<K,V> [] segments ;
+    private final int decalage ;	// 32 - log2(segments.length)
+
+    /** Crée une instance de dictionnaire vide */
+    public HashDictConcurrent() {
+        this(0, NB_SEGMENTS) ;
+    }
+
+    /** Crée une instance de dictionnaire vide, dimensionnée pour recevoir
+     * <code>capacite</code> associations sans redimensionnement, et répartie
+     * en au moins <code>nbSegments</code> segments (nombre de threads qui
+     * peuvent écrire à la fois sans s'attendre) */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public HashDictConcurrent(int capacite, int nbSegments) {
+        int n = 1 ;
+        while (n < nbSegments)
+            n *= 2 ;
+        int taille = INIT_SIZE ;
+        while (taille - taille/4 <= capacite / n)
+            taille *= 2 ;
+        segments = (Segment<K,V>[]) new Segment[n] ;
+        for (int s = 0 ; s < n ; s++)
+            segments[s] = new Segment<K,V>(taille) ;
+        decalage = n == 1 ? 32 : Integer.numberOfLeadingZeros(n) + 1 ;
+    }
+
+    /** Chaîne de caractères représentant le dictionnaire */
+    public String toString() {
+        StringBuilder s = new StringBuilder() ;
+        for (Segment<K,V> segment : segments) {
+            AtomicReferenceArray<Noeud<K,V>> table = segment.table ;
+            for (int i = 0 ; i < table.length() ; i++)
+                for (Noeud<K,V> n = table.get(i) ; n != null ; n = n.suivant)
+                    s.append(n.clef).append(" -> ").append(n.valeur).append('\n') ;
+        }
+        return s.toString() ;
+    }
+
+    // hachage de Fibonacci, comme dans HashDict : les bits de poids fort
+    // choisissent le segment, les bits de poids faible (mélangés avec les
+    // bits de poids fort) la liste dans le segment
+    private static int hacher(Object c) {
+        int h = c.hashCode() * 0x9E3779B9 ;
+        return h ^ (h >>> 16) ;
+    }
+
+    private Segment<K,V> segmentPour(int h) {
+        return segments[decalage == 32 ? 0 : h >>> decalage] ;
+    }
+
+    // maillon de clef c, null si elle est absente (sans verrou)
+    private Noeud<K,V> noeud(Object c) {
+        int h = hacher(c) ;
+        AtomicReferenceArray<Noeud<K,V>> table = segmentPour(h).table ;
+        for (Noeud<K,V> n = table.get(h & (table.length() - 1)) ; n != null ; n = n.suivant)
+            if (n.hachage == h && n.clef.equals(c))
+                return n ;
+        return null ;
+    }
+
+    // définit la valeur associée à la clef c, sous le verrou de son segment
+    private void put(K c, V v) {
+        if (c == null || v == null)
+            throw new NullPointerException() ;
+        int h = hacher(c) ;
+        Segment<K,V> segment = segmentPour(h) ;
+        synchronized (segment) {
+            AtomicReferenceArray<Noeud<K,V>> table = segment.table ;
+            int i = h & (table.length() - 1) ;
+            Noeud<K,V> tete = table.get(i) ;
+            for (Noeud<K,V> n = tete ; n != null ; n = n.suivant)
+                if (n.hachage == h && n.clef.equals(c)) {
+                    n.valeur = v ;
+                    return ;
+                }
+            table.set(i, new Noeud<K,V>(c, h, v, tete)) ;
+            segment.nbAssoc++ ;
+            if (4 * segment.nbAssoc > 3 * table.length())
+                rehash(segment) ;
+        }
+    }
+
+    // enlève l'association de clef c, si elle est présente et si sa valeur
+    // est v (ou quelle que soit sa valeur si v est null) ; la partie de la
+    // liste qui précède le maillon retiré est recopiée
+    private void remove(Object c, Object v) {
+        int h = hacher(c) ;
+        Segment<K,V> segment = segmentPour(h) ;
+        synchronized (segment) {
+            AtomicReferenceArray<Noeud<K,V>> table = segment.table ;
+            int i = h & (table.length() - 1) ;
+            Noeud<K,V> tete = table.get(i) ;
+            Noeud<K,V> retire = tete ;
+            while (retire != null && !(retire.hachage == h && retire.clef.equals(c)))
+                retire = retire.suivant ;
+            if (retire == null || (v != null && !retire.valeur.equals(v)))
+                return ;
+            Noeud<K,V> nouvelle = retire.suivant ;
+            for (Noeud<K,V> n = tete ; n != retire ; n = n.suivant)
+                nouvelle = new Noeud<K,V>(n.clef, n.hachage, n.valeur, nouvelle) ;
+            table.set(i, nouvelle) ;
+            segment.nbAssoc-- ;
+        }
+    }
+
+    // double la table du segment (appelée sous son verrou) : les maillons
+    // sont recopiés dans une nouvelle table, publiée une fois remplie
+    private static <K,V> void rehash(Segment<K,V> segment) {
+        AtomicReferenceArray<Noeud<K,V>> anciennes = segment.table ;
+        AtomicReferenceArray<Noeud<K,V>> table = new AtomicReferenceArray<Noeud<K,V>>(2 * anciennes.length()) ;
+        int masque = table.length() - 1 ;
+        for (int i = 0 ; i < anciennes.length() ; i++)
+            for (Noeud<K,V> n = anciennes.get(i) ; n != null ; n = n.suivant) {
+                int j = n.hachage & masque ;
+                table.set(j, new Noeud<K,V>(n.clef, n.hachage, n.valeur, table.get(j))) ;
+            }
+        segment.table = table ;
+    }
+
+    // méthodes nécessaires pour l'itérateur
+    int nbSegments() { return segments.length ; }
+
+    AtomicReferenceArray<Noeud<K,V>> tableDuSegment(int s) { return segments[s].table ; }
+
+    // IMPLÉMENTATION DE L'INTERFACE Dictionnaire
+
+    /** Teste si le dictionnaire ne contient aucune association */
+    public boolean estVide() {
+        for (Segment<K,V> segment : segments)
+            if (segment.nbAssoc != 0)
+                return false ;
+        return true ;
+    }
+
+    /** Teste si le dictionnaire contient l'association assoc */
+    public boolean contient(Couple<K,V> assoc) {
+        Noeud<K,V> n = noeud(assoc.premier()) ;
+        return n != null && n.valeur.equals(assoc.second()) ;
+    }
+
+    /** Teste si le dictionnaire possède une association de clef c */
+    public boolean contientClef(K c) {
+        return noeud(c) != null ;
+    }
+
+    /** Teste si le dictionnaire possède une association de valeur v */
+    public boolean contientValeur(V v) {
+        for (Segment<K,V> segment : segments) {
+            AtomicReferenceArray<Noeud<K,V>> table = segment.table ;
+            for (int i = 0 ; i < table.length() ; i++)
+                for (Noeud<K,V> n = table.get(i) ; n != null ; n = n.suivant)
+                    if (n.valeur.equals(v))
+                        return true ;
+        }
+        return false ;
+    }
+
+    /** Retourne le nombre d'associations du dictionnaire (la somme des
+     * segments, qui peut être dépassée si d'autres threads écrivent) */
+    public int nbElements() {
+        int nb = 0 ;
+        for (Segment<K,V> segment : segments)
+            nb += segment.nbAssoc ;
+        return nb ;
+    }
+
+    /** Retourne une copie de l'association correspondant à la clef spécifiée
+     * (la modifier ne modifie pas le dictionnaire) */
+    public Couple<K,V> assocPour(K c) {
+        Noeud<K,V> n = noeud(c) ;
+        return (n != null) ? new CoupleObj<K,V>(n.clef, n.valeur) : null ;
+    }
+
+    /** Retourne la valeur associee à la clef c */
+    public V valeurPour(K c) {
+        Noeud<K,V> n = noeud(c) ;
+        return (n != null) ? n.valeur : null ;
+    }
+
+    /** Ajoute une association au dictionnaire (sa clef et sa valeur sont
+     * recopiées : le couple lui-même n'est pas conservé) */
+    public void ajouter(Couple<K,V> assoc) {
+        put(assoc.premier(), assoc.second()) ;
+    }
+
+    /** Définit la valeur associée à la clef c */
+    public void ajouter(K c, V v) {
+        put(c, v) ;
+    }
+
+    /** Enlève une association du dictionnaire */
+    public void enlever(Couple<K,V> assoc)
+    {
+        if (assoc.second() != null)
+            remove(assoc.premier(), assoc.second()) ;
+    }
+
+    /** Enlève l'association de clef c */
+    public void enleverPour(K c)
+    {
+        remove(c, null) ;
+    }
+
+    // IMPLÉMENTATION DE L'INTERFACE Iterable
+
+    /** Itérateur faiblement cohérent permettant de parcourir les clefs (et
+     * d'en supprimer) pendant que d'autres threads modifient le dictionnaire */
+    public Iterator<K> iterator() {
+        return new HashDictConcurrentIterator<K>(this) ;
+    }
+}
@@ -0,0 +1,70 @@
+package dictionnaire.correction;
+import java.util.Iterator ;
+import java.util.concurrent.atomic.AtomicReferenceArray ;
+
+// Cette classe implémente l'itérateur qui permet de
+// parcourir les clefs d'un HashDictConcurrent.
+// Comme HashDictIterator, elle n'est pas publique : on ne
+// manipule cet itérateur qu'à travers l'interface
+// java.util.Iterator. Chaque segment est parcouru dans la table
+// qu'il avait quand l'itérateur y est arrivé ; les listes n'étant
+// jamais modifiées sur place, le parcours ne voit jamais d'état
+// intermédiaire
+class HashDictConcurrentIterator<K> implements Iterator<K> {
+    // l'instance de HashDictConcurrent sur laquelle on travaille
+    private HashDictConcurrent<K,?> dict ;
+    // segment en cours de parcours, et sa table
+    private int segment ;
+    private AtomicReferenceArray<? extends HashDictConcurrent.Noeud<K,?>> table ;
+    // indice dans la table de la liste en cours
+    private int position ;
+    // prochain maillon à retourner (null si aucun)
+    private HashDictConcurrent.Noeud<K,?> prochain ;
+    // clef retournée par le dernier appel à next
+    private K derniere ;
+
+    HashDictConcurrentIterator(HashDictConcurrent<K,?> dict) {
+        this.dict = dict ;
+        segment = -1 ;
+        position = -1 ;
+        avancer() ;
+    }
+
+    // place prochain sur le maillon suivant, en passant aux listes puis
+    // aux segments suivants si besoin
+    private void avancer() {
+        if (prochain != null)
+            prochain = prochain.suivant ;
+        while (prochain == null) {
+            if (table == null || ++position >= table.length()) {
+                if (++segment >= dict.nbSegments())
+                    return ;
+                table = dict.tableDuSegment(segment) ;
+                position = -1 ;
+                continue ;
+            }
+            prochain = table.get(position) ;
+        }
+    }
+
+    public boolean hasNext() {
+        return prochain != null ;
+    }
+
+    public K next() {
+        if (!this.hasNext())
+            return null ;
+        K key = prochain.clef ;
+        derniere = key ;
+        avancer() ;
+        return key ;
+    }
+
+    public void remove() {
+        if (derniere != null) {
+            dict.enleverPour(derniere) ;
+            derniere = null ;
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+package dictionnaire.correction;
+import java.util.Iterator ;
+
+// Cette classe implémente l'itérateur qui permet de
+// parcourir les clefs d'un HashDict.
+// Comme DictIterator, elle n'est pas publique : on ne
+// manipule cet itérateur qu'à travers l'interface
+// java.util.Iterator
+class HashDictIterator<K> implements Iterator<K> {
+    // l'instance de HashDict sur laquelle on travaille
+    private HashDict<K,?> dict ;
+    // indice de la prochaine case occupée (capacite() si aucune)
+    private int position ;
+    // indice de la case retournée par le dernier appel à next
+    private int derniere ;
+
+    HashDictIterator(HashDict<K,?> dict) {
+        this.dict = dict ;
+        position = -1 ;
+        derniere = -1 ;
+        avancer() ;
+    }
+
+    // place position sur la prochaine case occupée
+    private void avancer() {
+        do {
+            position++ ;
+        } while (position < dict.capacite() && dict.clefPourIndex(position) == null) ;
+    }
+
+    public boolean hasNext() {
+        return position < dict.capacite() ;
+    }
+
+    public K next() {
+        if (!this.hasNext())
+            return null ;
+        K key = dict.clefPourIndex(position) ;
+        derniere = position ;
+        avancer() ;
+        return key ;
+    }
+
+    public void remove() {
+        if (derniere >= 0) {
+            dict.remove(derniere) ;
+            derniere = -1 ;
+        }
+    }
+
+}
@@ -0,0 +1,241 @@
+package dictionnaire.correction;
+import java.util.Iterator ;
+
+/** Cette classe réalise un dictionnaire dont les clefs sont des entiers
+ * <code>long</code> et les valeurs des octets, au moyen d'une table de
+ * hachage à adressage ouvert (sondage linéaire) comme <code>HashDict</code>,
+ * mais rangée dans des tableaux de types primitifs : aucune association
+ * n'est un objet. Ainsi : <UL><LI><code>valeur</code>, <code>definir</code>
+ * et <code>retirer</code> travaillent directement sur les types primitifs et
+ * n'allouent rien (les valeurs sont retournées comme des entiers de 0 à 255,
+ * -1 signalant une clef absente)</LI> <LI>les méthodes de l'interface
+ * <code>Dictionnaire&lt;Long,Byte&gt;</code> sont aussi disponibles, au prix
+ * de la conversion des clefs et des valeurs en objets</LI> <LI>un marqueur
+ * d'état par case indique si elle est libre, occupée ou libérée par une
+ * suppression</LI></UL> */
+
+public class HashDictLong implements Dictionnaire<Long,Byte>, Iterable<Long>
+{
+    private static final int INIT_SIZE = 128 ;       // taille initiale (puissance de 2)
+    // états des cases
+    private static final byte LIBRE = 0 ;
+    private static final byte OCCUPEE = 1 ;
+    private static final byte SUPPRIMEE = 2 ;
+    private long [] clefs ;	// clefs des associations
+    private byte [] valeurs ;	// valeurs des associations
+    private byte [] etats ;	// état de chaque case
+    private int nbAssoc ;	// nombre d'associations effectivement présentes
+    private int nbSupprimes ;	// nombre de cases libérées par une suppression
+    private int decalage ;	// 64 - log2(clefs.length)
+
+    /** Crée une instance de dictionnaire vide */
+    public HashDictLong() {
+        this(INIT_SIZE) ;
+    }
+
+    /** Crée une instance de dictionnaire vide, dimensionnée pour recevoir
+     * <code>capacite</code> associations sans redimensionnement */
+    public HashDictLong(int capacite) {
+        int taille = INIT_SIZE ;
+        while (taille - taille/4 <= capacite)
+            taille *= 2 ;
+        allouer(taille) ;
+    }
+
+    /** Chaîne de caractères représentant le dictionnaire */
+    public String toString() {
+        StringBuilder s = new StringBuilder() ;
+        for (int i = 0 ; i < clefs.length ; i++)
+            if (etats[i] == OCCUPEE)
+                s.append(clefs[i]).append(" -> ").append(valeurs[i]).append('\n') ;
+        return s.toString() ;
+    }
+
+    private void allouer(int taille) {
+        clefs = new long[taille] ;
+        valeurs = new byte[taille] ;
+        etats = new byte[taille] ;
+        nbAssoc = 0 ;
+        nbSupprimes = 0 ;
+        decalage = Long.numberOfLeadingZeros(taille) + 1 ;
+    }
+
+    // indice de départ du sondage pour la clef c (hachage de Fibonacci sur
+    // 64 bits, comme dans HashDict)
+    private int indiceInitial(long c) {
+        return (int) ((c * 0x9E3779B97F4A7C15L) >>> decalage) ;
+    }
+
+    // indice de l'association de clef c ; -1 si elle est absente
+    private int indexOfClef(long c) {
+        int masque = clefs.length - 1 ;
+        for (int i = indiceInitial(c) ; etats[i] != LIBRE ; i = (i+1) & masque)
+            if (etats[i] == OCCUPEE && clefs[i] == c)
+                return i ;
+        return -1 ;
+    }
+
+    // reconstruit la table (en doublant sa taille si elle est
+    // réellement pleine, sinon simplement pour éliminer les cases supprimées)
+    private void rehash() {
+        long [] anciennesClefs = clefs ;
+        byte [] anciennesValeurs = valeurs ;
+        byte [] anciensEtats = etats ;
+        int taille = anciennesClefs.length ;
+        if (nbAssoc >= taille/2)
+            taille *= 2 ;
+        int nombre = nbAssoc ;
+        allouer(taille) ;
+        int masque = taille - 1 ;
+        for (int j = 0 ; j < anciennesClefs.length ; j++)
+            if (anciensEtats[j] == OCCUPEE) {
+                int i = indiceInitial(anciennesClefs[j]) ;
+                while (etats[i] != LIBRE)
+                    i = (i+1) & masque ;
+                clefs[i] = anciennesClefs[j] ;
+                valeurs[i] = anciennesValeurs[j] ;
+                etats[i] = OCCUPEE ;
+            }
+        nbAssoc = nombre ;
+    }
+
+    // enlève l'association à l'indice spécifié
+    void remove(int index) {
+        etats[index] = SUPPRIMEE ;
+        nbAssoc-- ;
+        nbSupprimes++ ;
+    }
+
+    // méthodes nécessaires pour l'itérateur
+    int capacite() { return clefs.length ; }
+
+    boolean estOccupee(int i) { return etats[i] == OCCUPEE ; }
+
+    long clefPourIndex(int i) { return clefs[i] ; }
+
+    // ACCÈS SANS ALLOCATION
+
+    /** Retourne la valeur (de 0 à 255) associée à la clef c, ou
+     * <code>absente</code> si le dictionnaire n'a pas d'association de clef c */
+    public int valeur(long c, int absente) {
+        int i = indexOfClef(c) ;
+        return (i >= 0) ? valeurs[i] & 0xFF : absente ;
+    }
+
+    /** Teste si le dictionnaire possède une association de clef c */
+    public boolean contientClef(long c) {
+        return indexOfClef(c) >= 0 ;
+    }
+
+    /** Définit ou modifie la valeur v associée à la clef c, en un seul
+     * parcours de la table ; retourne l'ancienne valeur (de 0 à 255), ou -1
+     * si la clef était absente */
+    public int definir(long c, byte v) {
+        int masque = clefs.length - 1 ;
+        int libre = -1 ;
+        int i = indiceInitial(c) ;
+        while (etats[i] != LIBRE) {
+            if (etats[i] == SUPPRIMEE) {
+                if (libre < 0) libre = i ;
+            }
+            else if (clefs[i] == c) {
+                int ancienne = valeurs[i] & 0xFF ;
+                valeurs[i] = v ;
+                return ancienne ;
+            }
+            i = (i+1) & masque ;
+        }
+        if (libre >= 0) {
+            i = libre ;
+            nbSupprimes-- ;
+        }
+        clefs[i] = c ;
+        valeurs[i] = v ;
+        etats[i] = OCCUPEE ;
+        nbAssoc++ ;
+        if (4 * (nbAssoc + nbSupprimes) > 3 * clefs.length)
+            rehash() ;
+        return -1 ;
+    }
+
+    /** Enlève l'association de clef c ; retourne sa valeur (de 0 à 255), ou
+     * -1 si la clef était absente */
+    public int retirer(long c) {
+        int i = indexOfClef(c) ;
+        if (i < 0)
+            return -1 ;
+        remove(i) ;
+        return valeurs[i] & 0xFF ;
+    }
+
+    // IMPLÉMENTATION DE L'INTERFACE Dictionnaire
+
+    /** Teste si le dictionnaire ne contient aucune association */
+    public boolean estVide() { return (nbAssoc == 0) ; }
+
+    /** Teste si le dictionnaire contient l'association assoc */
+    public boolean contient(Couple<Long,Byte> assoc) {
+        int i = indexOfClef(assoc.premier()) ;
+        return (i >= 0) && assoc.second() != null && valeurs[i] == assoc.second() ;
+    }
+
+    /** Teste si le dictionnaire possède une association de clef c */
+    public boolean contientClef(Long c) {
+        return indexOfClef(c) >= 0 ;
+    }
+
+    /** Teste si le dictionnaire possède une association de valeur v */
+    public boolean contientValeur(Byte v) {
+        for (int i = 0 ; i < clefs.length ; i++)
+            if (etats[i] == OCCUPEE && valeurs[i] == v)
+                return true ;
+        return false ;
+    }
+
+    /** Retourne le nombre d'associations du dictionnaire */
+    public int nbElements() { return nbAssoc ; }
+
+    /** Retourne une copie de l'association correspondant à la clef spécifiée
+     * (la modifier ne modifie pas le dictionnaire) */
+    public Couple<Long,Byte> assocPour(Long c) {
+        int i = indexOfClef(c) ;
+        return (i >= 0) ? new CoupleObj<Long,Byte>(c, valeurs[i]) : null ;
+    }
+
+    /** Retourne la valeur associee à la clef c */
+    public Byte valeurPour(Long c) {
+        int i = indexOfClef(c) ;
+        return (i >= 0) ? valeurs[i] : null ;
+    }
+
+    /** Ajoute une association au dictionnaire */
+    public void ajouter(Couple<Long,Byte> assoc) {
+        definir(assoc.premier(), assoc.second()) ;
+    }
+
+    /** Définit la valeur associée à la clef c */
+    public void ajouter(Long c, Byte v) {
+        definir(c, v) ;
+    }
+
+    /** Enlève une association du dictionnaire */
+    public void enlever(Couple<Long,Byte> assoc)
+    {
+        int i = indexOfClef(assoc.premier()) ;
+        if (i >= 0 && assoc.second() != null && valeurs[i] == assoc.second())
+            remove(i) ;
+    }
+
+    /** Enlève l'association de clef c */
+    public void enleverPour(Long c)
+    {
+        retirer(c) ;
+    }
+
+    // IMPLÉMENTATION DE L'INTERFACE Iterable
+
+    /** Itérateur permettant de parcourir les clefs (et d'en supprimer) */
+    public Iterator<Long> iterator() {
+        return new HashDictLongIterator(this) ;
+    }
+}
@@ -0,0 +1,51 @@
+package dictionnaire.correction;
+import java.util.Iterator ;
+
+// Cette classe implémente l'itérateur qui permet de
+// parcourir les clefs d'un HashDictLong.
+// Comme HashDictIterator, elle n'est pas publique : on ne
+// manipule cet itérateur qu'à travers l'interface
+// java.util.Iterator
+class HashDictLongIterator implements Iterator<Long> {
+    // l'instance de HashDictLong sur laquelle on travaille
+    private HashDictLong dict ;
+    // indice de la prochaine case occupée (capacite() si aucune)
+    private int position ;
+    // indice de la case retournée par le dernier appel à next
+    private int derniere ;
+
+    HashDictLongIterator(HashDictLong dict) {
+        this.dict = dict ;
+        position = -1 ;
+        derniere = -1 ;
+        avancer() ;
+    }
+
+    // place position sur la prochaine case occupée
+    private void avancer() {
+        do {
+            position++ ;
+        } while (position < dict.capacite() && !dict.estOccupee(position)) ;
+    }
+
+    public boolean hasNext() {
+        return position < dict.capacite() ;
+    }
+
+    public Long next() {
+        if (!this.hasNext())
+            return null ;
+        long key = dict.clefPourIndex(position) ;
+        derniere = position ;
+        avancer() ;
+        return key ;
+    }
+
+    public void remove() {
+        if (derniere >= 0) {
+            dict.remove(derniere) ;
+            derniere = -1 ;
+        }
+    }
+
+}
@@ -27,10 +27,10 @@ public class TabDict<K,V> implements Dictionnaire<K,V>, Iterable<K>
 
     /** Chaîne de caractères représentant le dictionnaire */
     public String toString() {
-        String s = "" ;
+        StringBuilder s = new StringBuilder() ;
         for (int i=0; i<nbAssoc; i++)
-            s += associations[i] + "\n" ;
-        return s;
+            s.append(associations[i]).append('\n') ;
+        return s.toString() ;
     }
     
     // redimensionnement automatique du tableau en une taille double
@@ -66,14 +66,6 @@ public class TabDict<K,V> implements Dictionnaire<K,V>, Iterable<K>
         nbAssoc-- ;
     }
 
-    // indice de l'association assoc ; -1 si elle est absente 
-    private int indexOf(Couple<K,V> assoc) {
-        for (int i=0; i<nbAssoc; i++)
-            if (associations[i].equals(assoc)) 
-                return i ;
-        return -1 ;
-    }
-    
     // indice de l'association de clef c ; -1 si elle est absente
     private int indexOfClef(K c) {
         for (int i=0; i<nbAssoc; i++)
@@ -137,34 +129,41 @@ public class TabDict<K,V> implements Dictionnaire<K,V>, Iterable<K>
         return null ;
     }
     
+    // (un seul parcours du tableau par opération : on cherche l'indice de
+    // la clef, au lieu de tester sa présence puis de la chercher à nouveau)
+
     /** Ajoute une association au dictionnaire */
     public void ajouter(Couple<K,V> assoc) {
-        if (!contientClef(assoc.premier()))
+        int i = indexOfClef(assoc.premier()) ;
+        if (i < 0)
             add(assoc) ;
         else
-            associations[indexOfClef(assoc.premier())] = assoc ;
+            associations[i] = assoc ;
     }
     
     /** Définit la valeur associée à la clef c */
     public void ajouter(K c, V v) {
-        if (!contientClef(c))
+        int i = indexOfClef(c) ;
+        if (i < 0)
             add(new CoupleObj<K,V>(c, v)) ;
         else
-            associations[indexOfClef(c)] = new CoupleObj<K,V>(c, v) ;
+            associations[i] = new CoupleObj<K,V>(c, v) ;
     }
 
     /** Enlève une association du dictionnaire */
     public void enlever(Couple<K,V> assoc) 
     {
-        if (contientClef(assoc.premier()))
-            remove(indexOf(assoc)) ;
+        int i = indexOfClef(assoc.premier()) ;
+        if (i >= 0 && associations[i].equals(assoc))
+            remove(i) ;
     }
 	
     /** Enlève l'association de clef c */
     public void enleverPour(K c) 
     {
-        if (contientClef(c))
-            remove(indexOfClef(c)) ;
+        int i = indexOfClef(c) ;
+        if (i >= 0)
+            remove(i) ;
     }
 
     // IMPLÉMENTATION DE L'INTERFACE Iterable